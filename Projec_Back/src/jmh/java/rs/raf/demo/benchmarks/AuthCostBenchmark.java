@@ -0,0 +1,91 @@
+package rs.raf.demo.benchmarks;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import rs.raf.demo.filters.JwtFilter;
+import rs.raf.demo.model.Role;
+import rs.raf.demo.model.User;
+import rs.raf.demo.repositories.RoleRepository;
+import rs.raf.demo.repositories.UserRepository;
+import rs.raf.demo.services.RoleCatalog;
+import rs.raf.demo.services.UserDetailService;
+import rs.raf.demo.utils.JwtUtil;
+import rs.raf.demo.utils.TokenRevocationStore;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request authentication cost before and after single-parse verification. {@code before}
+ * repeats what the filter used to do: parse the token for the username, load the user, then
+ * parse it twice more to compare the subject and check the expiry. {@code after} is the
+ * current {@link JwtFilter} with the default configuration, where a polling client's token is
+ * served from the verified-token cache and carries its permissions. The user lookup is stubbed
+ * out in both, so only token handling and context setup are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthCostBenchmark {
+
+    private JwtUtil jwtUtil;
+    private UserDetailService userDetailService;
+    private JwtFilter jwtFilter;
+    private String legacyToken;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        User user = new User(1L, "Stefan", "Maksimovic", BenchmarkContext.OWNER_MAIL, "password");
+        user.getRoles().add(new Role(1L, "can_search_machines"));
+        user.getRoles().add(new Role(2L, "can_start_machines"));
+
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByMail(BenchmarkContext.OWNER_MAIL)).thenReturn(user);
+
+        jwtUtil = new JwtUtil(true, 10000, 15, 7, new TokenRevocationStore());
+        userDetailService = new UserDetailService(userRepository, new RoleCatalog(Mockito.mock(RoleRepository.class)));
+        jwtFilter = new JwtFilter(userDetailService, jwtUtil);
+        legacyToken = jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL);
+        token = jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL, userDetailService.loadUserByUsername(BenchmarkContext.OWNER_MAIL).getPermissions());
+    }
+
+    @Benchmark
+    public Object before() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/machines/get");
+        request.addHeader("Authorization", "Bearer " + legacyToken);
+
+        String jwt = request.getHeader("Authorization").substring("Bearer ".length());
+        String username = jwtUtil.extractAllClaims(jwt).getSubject();
+        UserDetails userDetails = userDetailService.loadUserByUsername(username);
+        boolean valid = userDetails.getUsername().equals(jwtUtil.extractAllClaims(jwt).getSubject())
+                && !jwtUtil.extractAllClaims(jwt).getExpiration().before(new Date());
+        if (valid) {
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Benchmark
+    public Object after() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/machines/get");
+        request.addHeader("Authorization", "Bearer " + token);
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
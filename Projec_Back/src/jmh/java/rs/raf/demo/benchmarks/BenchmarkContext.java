@@ -0,0 +1,42 @@
+package rs.raf.demo.benchmarks;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import rs.raf.demo.DemoApplication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boots the whole application against a private in-memory H2 database, so the benchmarks
+ * exercise the real repositories and services without a MySQL server.
+ */
+final class BenchmarkContext {
+
+    static final String OWNER_MAIL = "smaksimovic3519rn@raf.rs";
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Properties are passed as command line arguments so they take precedence over
+     * application.properties.
+     */
+    static ConfigurableApplicationContext start(String databaseName, String... extraProperties) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        for (String property : extraProperties) {
+            arguments.add("--" + property);
+        }
+        return new SpringApplicationBuilder(DemoApplication.class).run(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,97 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import rs.raf.demo.bootstrap.FixtureImporter;
+import rs.raf.demo.model.User;
+import rs.raf.demo.services.MachineService;
+import rs.raf.demo.services.UserService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads {@code users} users sharing five passwords, each with {@code machinesPerUser}
+ * machines, either through the {@link FixtureImporter} or the row-by-row calls the demo seed
+ * makes ({@code addUser}, {@code addRoleToUser}, {@code createMachine}). Every invocation
+ * uses fresh mails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class FixtureImportBenchmark {
+
+    @Param({"import", "row-by-row"})
+    public String mode;
+
+    @Param({"200"})
+    public int users;
+
+    @Param({"10"})
+    public int machinesPerUser;
+
+    private ConfigurableApplicationContext context;
+    private FixtureImporter importer;
+    private UserService userService;
+    private MachineService machineService;
+    private Path fixture;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("fixture" + mode.replace("-", ""));
+        importer = context.getBean(FixtureImporter.class);
+        userService = context.getBean(UserService.class);
+        machineService = context.getBean(MachineService.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void writeFixture() throws IOException {
+        round++;
+        fixture = Files.createTempFile("fixture", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(fixture, StandardCharsets.UTF_8)) {
+            for (int u = 0; u < users; u++) {
+                writer.write("user," + mail(u) + ",password" + (u % 5) + ",Name,Last,can_search_machines|can_start_machines\n");
+                for (int m = 0; m < machinesPerUser; m++) {
+                    writer.write("machine," + mail(u) + ",STOPPED,true,2021-12-01,machine-" + m + "\n");
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteFixture() throws IOException {
+        Files.deleteIfExists(fixture);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object load() throws IOException {
+        if ("import".equals(mode)) {
+            return importer.importFile(fixture);
+        }
+        for (int u = 0; u < users; u++) {
+            userService.addUser(new User(null, "Name", "Last", mail(u), "password" + (u % 5)));
+            userService.addRoleToUser(mail(u), "can_search_machines");
+            userService.addRoleToUser(mail(u), "can_start_machines");
+            for (int m = 0; m < machinesPerUser; m++) {
+                machineService.createMachine("machine-" + m, mail(u));
+            }
+        }
+        return users;
+    }
+
+    private String mail(int user) {
+        return "user" + user + "-" + round + "@fixture.rs";
+    }
+}
@@ -0,0 +1,50 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import rs.raf.demo.utils.JwtUtil;
+import rs.raf.demo.utils.TokenRevocationStore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and verification. {@code legacyTripleParse} repeats the three parses the
+ * filter used to do per request, {@code verify} is the current single parse (served from the
+ * verified-token cache when {@code cacheEnabled} is true).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(cacheEnabled, 10000, 15, 7, new TokenRevocationStore());
+        token = jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL);
+    }
+
+    @Benchmark
+    public Object verify() {
+        return jwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public void legacyTripleParse(Blackhole blackhole) {
+        blackhole.consume(jwtUtil.extractAllClaims(token).getSubject());
+        blackhole.consume(jwtUtil.extractAllClaims(token).getSubject());
+        blackhole.consume(jwtUtil.extractAllClaims(token).getExpiration());
+    }
+}
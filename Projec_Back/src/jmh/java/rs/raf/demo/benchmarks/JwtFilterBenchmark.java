@@ -0,0 +1,68 @@
+package rs.raf.demo.benchmarks;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import rs.raf.demo.filters.JwtFilter;
+import rs.raf.demo.model.Role;
+import rs.raf.demo.model.User;
+import rs.raf.demo.repositories.RoleRepository;
+import rs.raf.demo.repositories.UserRepository;
+import rs.raf.demo.services.RoleCatalog;
+import rs.raf.demo.services.UserDetailService;
+import rs.raf.demo.utils.JwtUtil;
+import rs.raf.demo.utils.TokenRevocationStore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through {@link JwtFilter}, with the user lookup stubbed out so
+ * only the token handling and security context setup are measured. With
+ * {@code permissionsClaim} the principal is built from the token and the lookup is skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    @Param({"false", "true"})
+    public boolean permissionsClaim;
+
+    private JwtFilter jwtFilter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setUp() {
+        User user = new User(1L, "Stefan", "Maksimovic", BenchmarkContext.OWNER_MAIL, "password");
+        user.getRoles().add(new Role(1L, "can_search_machines"));
+        user.getRoles().add(new Role(2L, "can_start_machines"));
+
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByMail(BenchmarkContext.OWNER_MAIL)).thenReturn(user);
+
+        JwtUtil jwtUtil = new JwtUtil(cacheEnabled, 10000, 15, 7, new TokenRevocationStore());
+        UserDetailService userDetailService = new UserDetailService(userRepository, new RoleCatalog(Mockito.mock(RoleRepository.class)));
+        jwtFilter = new JwtFilter(userDetailService, jwtUtil);
+        authorizationHeader = "Bearer " + (permissionsClaim
+                ? jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL, userDetailService.loadUserByUsername(BenchmarkContext.OWNER_MAIL).getPermissions())
+                : jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL));
+    }
+
+    @Benchmark
+    public Object authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/machines/get");
+        request.addHeader("Authorization", authorizationHeader);
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,58 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rs.raf.demo.services.ConfigurableLifecycleExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of 1000 concurrent lifecycle operations per executor mode. Each
+ * operation blocks for {@code blockMillis}, standing in for the database round trips of a
+ * transition. On JDK versions without virtual threads the {@code virtual} mode measures the
+ * bounded fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LifecycleExecutorBenchmark {
+
+    private static final int OPERATIONS = 1000;
+
+    @Param({"bounded", "work-stealing", "virtual"})
+    public String mode;
+
+    @Param({"1"})
+    public long blockMillis;
+
+    private ConfigurableLifecycleExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new ConfigurableLifecycleExecutor(mode, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void concurrentOperations() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(OPERATIONS);
+        for (int i = 0; i < OPERATIONS; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,366 @@
+package rs.raf.demo.benchmarks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import rs.raf.demo.bootstrap.FixtureImporter;
+import rs.raf.demo.services.FleetStatusCounters;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load test of the whole application over HTTP and WebSocket, against the embedded
+ * H2 database of {@link BenchmarkContext}. It imports {@code users} users with
+ * {@code machines} machines each. Then {@code clients} threads log in as those users and
+ * send requests picked at random by the weights in {@code mix} for {@code duration} seconds.
+ * Meanwhile {@code subscribers} STOMP clients listen to their owners' status topics. Requests
+ * in the first {@code warmup} seconds are not measured. The report has throughput and
+ * p50/p95/p99/max latency per operation and can also be written as CSV with
+ * {@code out=file.csv}, so runs of different releases can be compared.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec@load-harness -Dload.args="clients=64 duration=60 mix=search:50,lifecycle:30,list:20"
+ * </pre>
+ * Non-2xx responses are timed as well and counted separately: start/stop/restart answer 404
+ * for machines that are not in the required status.
+ */
+public final class LoadHarness {
+
+    private static final String PASSWORD = "load1";
+    private static final String ROLES = "can_read_users|can_search_machines|can_start_machines|can_stop_machines|can_restart_machines|can_schedule_machines";
+    private static final String DEFAULT_MIX = "login:5,list:15,search:30,summary:10,users:5,lifecycle:25,schedule:10";
+    private static final Pattern MACHINE_ID = Pattern.compile("\"id\":(\\d+)");
+    private static final Pattern JWT = Pattern.compile("\"jwt\":\"([^\"]+)\"");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private enum Operation {
+        LOGIN, LIST, SEARCH, SUMMARY, USERS, LIFECYCLE, SCHEDULE
+    }
+
+    private final Map<String, String> options;
+    private final int users;
+    private final int machines;
+    private final int clients;
+    private final List<Operation> weighted = new ArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<Operation, Timer> timers = new LinkedHashMap<>();
+    private final Map<Operation, Counter> failures = new HashMap<>();
+    private final LongAdder frames = new LongAdder();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private String baseUrl;
+    private volatile long measureFrom;
+    private volatile long deadline;
+    private volatile String firstError;
+
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+        this.users = option("users", 50);
+        this.machines = option("machines", 20);
+        this.clients = option("clients", 32);
+        if (users < 1 || machines < 1 || clients < 1) {
+            throw new IllegalArgumentException("users, machines and clients must be at least 1");
+        }
+
+        for (String entry : options.getOrDefault("mix", DEFAULT_MIX).split(",")) {
+            String[] weight = entry.split(":");
+            Operation operation = Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = 0; i < Integer.parseInt(weight[1].trim()); i++) {
+                weighted.add(operation);
+            }
+            timers.put(operation, timer(operation.name().toLowerCase(Locale.ROOT)));
+            failures.put(operation, Counter.builder("load.failures").tag("operation", operation.name()).register(registry));
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("mix must give at least one operation a positive weight");
+        }
+
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        new LoadHarness(options).run();
+    }
+
+
+    private void run() throws Exception {
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+        PrintStream err = System.err;
+        ConfigurableApplicationContext context = BenchmarkContext.start("load");
+        try {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            seed(context);
+            if (!"false".equals(options.get("quiet"))) {
+                System.setErr(new PrintStream(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                    }
+                }));
+            }
+
+            long start = System.nanoTime();
+            measureFrom = start + TimeUnit.SECONDS.toNanos(option("warmup", 5));
+            deadline = measureFrom + TimeUnit.SECONDS.toNanos(option("duration", 30));
+
+            List<StompSession> sessions = subscribe(option("subscribers", 8));
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                int user = i % users;
+                Thread thread = new Thread(() -> client(user), "load-client-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            sessions.forEach(StompSession::disconnect);
+
+            System.setErr(err);
+            report((System.nanoTime() - measureFrom) / 1e9, sessions.size());
+        } finally {
+            System.setErr(err);
+            context.close();
+        }
+    }
+
+
+    private void seed(ConfigurableApplicationContext context) throws IOException {
+        Path fixture = Files.createTempFile("load", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(fixture, StandardCharsets.UTF_8)) {
+            for (int u = 0; u < users; u++) {
+                writer.write("user," + mail(u) + "," + PASSWORD + ",Load,User" + u + "," + ROLES + "\n");
+                for (int m = 0; m < machines; m++) {
+                    writer.write("machine," + mail(u) + "," + (m % 2 == 0 ? "STOPPED" : "RUNNING") + ",true,2021-12-01,load-" + u + "-" + m + "\n");
+                }
+            }
+        }
+        try {
+            context.getBean(FixtureImporter.class).importFile(fixture);
+            context.getBean(FleetStatusCounters.class).reconcile();
+        } finally {
+            Files.deleteIfExists(fixture);
+        }
+    }
+
+
+    private void client(int user) {
+        String mail = mail(user);
+        String token = login(mail);
+        List<Long> machineIds = new ArrayList<>();
+        Matcher matcher = MACHINE_ID.matcher(send(HttpMethod.GET, "/api/machines/get?mail=" + mail, token, null).getBody());
+        while (matcher.find()) {
+            machineIds.add(Long.parseLong(matcher.group(1)));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation operation = weighted.get(random.nextInt(weighted.size()));
+            long machineId = machineIds.get(random.nextInt(machineIds.size()));
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = perform(operation, mail, token, machineId, random);
+            } catch (RuntimeException e) {
+                if (firstError == null) firstError = operation + ": " + e;
+                status = -1;
+            }
+            long end = System.nanoTime();
+            if (start >= measureFrom) {
+                timers.get(operation).record(end - start, TimeUnit.NANOSECONDS);
+                if (status < 200 || status >= 300) failures.get(operation).increment();
+            }
+        }
+    }
+
+
+    private int perform(Operation operation, String mail, String token, long machineId, ThreadLocalRandom random) {
+        switch (operation) {
+            case LOGIN:
+                return send(HttpMethod.POST, "/api/users/login", null,
+                        "{\"mail\":\"" + mail + "\",\"password\":\"" + PASSWORD + "\"}").getStatusCodeValue();
+            case LIST:
+                return send(HttpMethod.GET, "/api/machines/get?mail=" + mail, token, null).getStatusCodeValue();
+            case SEARCH:
+                return send(HttpMethod.GET, "/api/machines/search?mail=" + mail + "&status=" + (random.nextBoolean() ? "RUNNING" : "STOPPED") + "&size=20",
+                        token, null).getStatusCodeValue();
+            case SUMMARY:
+                return send(HttpMethod.GET, "/api/machines/summary?mail=" + mail, token, null).getStatusCodeValue();
+            case USERS:
+                return send(HttpMethod.GET, "/api/users/get/page?size=20", token, null).getStatusCodeValue();
+            case LIFECYCLE:
+                String action = new String[]{"start", "stop", "restart"}[random.nextInt(3)];
+                return send(HttpMethod.GET, "/api/machines/" + action + "/" + machineId, token, null).getStatusCodeValue();
+            default:
+                LocalDateTime fireTime = LocalDateTime.now().plusSeconds(random.nextLong(3600, 86400));
+                return send(HttpMethod.POST, "/api/machines/schedule", token,
+                        "{\"id\":" + machineId + ",\"date\":\"" + fireTime.format(DATE) + "\",\"time\":\"" + fireTime.format(TIME) + "\",\"action\":\"Start\"}")
+                        .getStatusCodeValue();
+        }
+    }
+
+
+    private String login(String mail) {
+        String body = send(HttpMethod.POST, "/api/users/login", null, "{\"mail\":\"" + mail + "\",\"password\":\"" + PASSWORD + "\"}").getBody();
+        Matcher matcher = JWT.matcher(body == null ? "" : body);
+        if (!matcher.find()) throw new IllegalStateException("Login of " + mail + " failed: " + body);
+        return matcher.group(1);
+    }
+
+
+    private ResponseEntity<String> send(HttpMethod method, String path, String token, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        if (token != null) headers.setBearerAuth(token);
+        if (body != null) headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(baseUrl + path, method, new HttpEntity<>(body, headers), String.class);
+    }
+
+
+    /**
+     * Connects the STOMP clients, each to the status topic of its own user, and times the
+     * connect and subscribe round trips.
+     */
+    private List<StompSession> subscribe(int subscribers) throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        Timer connectTimer = timer("ws-connect");
+        List<StompSession> sessions = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            String mail = mail(i % users);
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + login(mail));
+
+            long start = System.nanoTime();
+            StompSession session = stompClient.connect(baseUrl.replace("http", "ws") + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                    new StompSessionHandlerAdapter() {
+                    }).get(10, TimeUnit.SECONDS);
+            session.subscribe("/topic/machine-status/" + mail, new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    frames.increment();
+                }
+            });
+            connectTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+
+    private Timer timer(String operation) {
+        return Timer.builder("load.requests")
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .percentilePrecision(2)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+
+    private void report(double seconds, int subscribers) throws IOException {
+        List<String> rows = new ArrayList<>();
+        rows.add("operation,requests,non_2xx,throughput_per_s,p50_ms,p95_ms,p99_ms,max_ms");
+        long total = 0;
+        for (Map.Entry<Operation, Timer> entry : timers.entrySet()) {
+            long count = entry.getValue().count();
+            total += count;
+            rows.add(row(entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue(), (long) failures.get(entry.getKey()).count(), count / seconds));
+        }
+        Timer connect = registry.find("load.requests").tag("operation", "ws-connect").timer();
+        if (connect != null && connect.count() > 0) rows.add(row("ws-connect", connect, 0, 0));
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%d users, %d clients, %d subscribers, %.1f s measured%n", users, clients, subscribers, seconds);
+        System.out.printf(Locale.ROOT, "%-12s %9s %8s %10s %9s %9s %9s %9s%n", "operation", "requests", "non-2xx", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (String row : rows.subList(1, rows.size())) {
+            Object[] columns = row.split(",");
+            System.out.printf(Locale.ROOT, "%-12s %9s %8s %10s %9s %9s %9s %9s%n", columns);
+        }
+        System.out.printf(Locale.ROOT, "total %.1f req/s, %d status frames received over WebSocket%n", total / seconds, frames.sum());
+        if (firstError != null) System.out.println("first client error: " + firstError);
+
+        String out = options.get("out");
+        if (out != null) {
+            Files.write(Paths.get(out), rows, StandardCharsets.UTF_8);
+            System.out.println("written to " + out);
+        }
+    }
+
+
+    private static String row(String operation, Timer timer, long failures, double throughput) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder row = new StringBuilder(operation).append(',').append(timer.count()).append(',').append(failures)
+                .append(',').append(String.format(Locale.ROOT, "%.1f", throughput));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            row.append(',').append(String.format(Locale.ROOT, "%.2f", percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        return row.append(',').append(String.format(Locale.ROOT, "%.2f", snapshot.max(TimeUnit.MILLISECONDS))).toString();
+    }
+
+
+    private int option(String name, int defaultValue) {
+        String value = options.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+
+    private static String mail(int user) {
+        return "load" + user + "@load.rs";
+    }
+}
@@ -0,0 +1,45 @@
+package rs.raf.demo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import rs.raf.demo.model.enums.Status;
+import rs.raf.demo.responses.MachineResponse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of {@link MachineResponse} lists, as the list endpoints return them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MachineJsonBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int listSize;
+
+    private ObjectMapper objectMapper;
+    private List<MachineResponse> machines;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        machines = new ArrayList<>();
+        for (int i = 0; i < listSize; i++) {
+            machines.add(new MachineResponse((long) i, "machine-" + i, i % 2 == 0 ? Status.RUNNING : Status.STOPPED, true, LocalDate.now(),
+                    1L, BenchmarkContext.OWNER_MAIL));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeMachines() throws Exception {
+        return objectMapper.writeValueAsBytes(machines);
+    }
+}
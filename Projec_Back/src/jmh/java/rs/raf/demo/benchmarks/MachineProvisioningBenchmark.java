@@ -0,0 +1,58 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import rs.raf.demo.services.MachineService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provisions {@code count} machines for one owner, either one {@code createMachine} call per
+ * machine or with a single batched {@code createMachines} call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MachineProvisioningBenchmark {
+
+    @Param({"single", "bulk"})
+    public String mode;
+
+    @Param({"10000"})
+    public int count;
+
+    private ConfigurableApplicationContext context;
+    private MachineService machineService;
+    private List<String> names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("provisioning" + mode);
+        machineService = context.getBean(MachineService.class);
+        names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("machine-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object provision() {
+        if ("bulk".equals(mode)) {
+            return machineService.createMachines(names, BenchmarkContext.OWNER_MAIL);
+        }
+        List<Long> ids = new ArrayList<>(count);
+        for (String name : names) {
+            ids.add(machineService.createMachine(name, BenchmarkContext.OWNER_MAIL).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,75 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.User;
+import rs.raf.demo.model.enums.Status;
+import rs.raf.demo.repositories.MachineRepository;
+import rs.raf.demo.repositories.UserRepository;
+import rs.raf.demo.services.MachineService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MachineService#searchMachines} over a synthetic inventory owned by one user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MachineSearchBenchmark {
+
+    @Param({"1000", "100000"})
+    public int inventorySize;
+
+    private ConfigurableApplicationContext context;
+    private MachineService machineService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("search" + inventorySize);
+        machineService = context.getBean(MachineService.class);
+        MachineRepository machineRepository = context.getBean(MachineRepository.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        User owner = context.getBean(UserRepository.class).findByMail(BenchmarkContext.OWNER_MAIL);
+
+        Status[] statuses = {Status.STOPPED, Status.RUNNING};
+        for (int start = 0; start < inventorySize; start += 1000) {
+            int from = start;
+            transactionTemplate.execute(transactionStatus -> {
+                List<Machine> machines = new ArrayList<>();
+                for (int i = from; i < Math.min(from + 1000, inventorySize); i++) {
+                    machines.add(new Machine(null, statuses[i % 2], owner, true, "machine-" + i, LocalDate.now().minusDays(i % 365)));
+                }
+                return machineRepository.saveAll(machines);
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object searchByNameAndStatus() {
+        return machineService.searchMachines("machine-12", Arrays.asList("RUNNING"), null, null,
+                BenchmarkContext.OWNER_MAIL, PageRequest.of(0, 50, Sort.by(Sort.Direction.DESC, "creationDate")));
+    }
+
+    @Benchmark
+    public Object searchByDateRange() {
+        return machineService.searchMachines(null, null, LocalDate.now().minusDays(30), LocalDate.now(),
+                BenchmarkContext.OWNER_MAIL, PageRequest.of(0, 50, Sort.by(Sort.Direction.DESC, "creationDate")));
+    }
+}
@@ -0,0 +1,104 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.enums.Status;
+import rs.raf.demo.repositories.MachineRepository;
+import rs.raf.demo.services.MachineCommandDispatcher;
+import rs.raf.demo.services.MachineService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent status flips applied either through the striped {@link MachineCommandDispatcher}
+ * or, as before, inside a transaction holding a {@code SELECT ... FOR UPDATE} row lock.
+ * A small {@code machineCount} means heavy contention on the same rows.
+ * <p>
+ * The {@code mixed} group adds the status reads of the controller pre-checks: 6 threads read
+ * while 2 flip. With row locks every read was a {@code SELECT ... FOR UPDATE} and queued behind
+ * the writers; with the dispatcher it is a plain {@code SELECT}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class MachineTransitionBenchmark {
+
+    @Param({"dispatcher", "lock"})
+    public String mode;
+
+    @Param({"8", "1000"})
+    public int machineCount;
+
+    private ConfigurableApplicationContext context;
+    private MachineCommandDispatcher commandDispatcher;
+    private MachineRepository machineRepository;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private List<Long> machineIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("transition" + mode + machineCount);
+        commandDispatcher = context.getBean(MachineCommandDispatcher.class);
+        machineRepository = context.getBean(MachineRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        MachineService machineService = context.getBean(MachineService.class);
+        machineIds = new ArrayList<>();
+        for (int i = 0; i < machineCount; i++) {
+            machineIds.add(machineService.createMachine("machine-" + i, BenchmarkContext.OWNER_MAIL).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Object mixedTransition() {
+        return transition();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Status mixedStatusRead() {
+        Long id = machineIds.get(ThreadLocalRandom.current().nextInt(machineIds.size()));
+        LockModeType lockMode = "dispatcher".equals(mode) ? LockModeType.NONE : LockModeType.PESSIMISTIC_WRITE;
+        return transactionTemplate.execute(status -> entityManager.find(Machine.class, id, lockMode).getStatus());
+    }
+
+    @Benchmark
+    public Object transition() {
+        Long id = machineIds.get(ThreadLocalRandom.current().nextInt(machineIds.size()));
+        if ("dispatcher".equals(mode)) {
+            return commandDispatcher.submit(id, () -> transactionTemplate.execute(status -> {
+                Machine machine = machineRepository.findById(id).get();
+                machine.setStatus(machine.getStatus() == Status.RUNNING ? Status.STOPPED : Status.RUNNING);
+                return machineRepository.save(machine);
+            })).join();
+        }
+        return transactionTemplate.execute(status -> {
+            Machine machine = entityManager.find(Machine.class, id, LockModeType.PESSIMISTIC_WRITE);
+            machine.setStatus(machine.getStatus() == Status.RUNNING ? Status.STOPPED : Status.RUNNING);
+            return machine;
+        });
+    }
+}
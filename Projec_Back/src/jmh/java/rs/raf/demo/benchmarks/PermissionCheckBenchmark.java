@@ -0,0 +1,45 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import rs.raf.demo.filters.PermissionInterceptor;
+import rs.raf.demo.model.UserPrincipal;
+import rs.raf.demo.model.enums.Permission;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single permission check: the string scan over granted authorities the controllers used
+ * to repeat, against the bit mask test of {@link PermissionInterceptor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PermissionCheckBenchmark {
+
+    private Authentication authentication;
+
+    @Setup
+    public void setUp() {
+        long allPermissions = 0;
+        for (Permission permission : Permission.values()) {
+            allPermissions |= permission.mask();
+        }
+        UserPrincipal principal = new UserPrincipal(BenchmarkContext.OWNER_MAIL, null, allPermissions);
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    @Benchmark
+    public boolean authorityScan() {
+        return authentication.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("can_schedule_machines"));
+    }
+
+    @Benchmark
+    public boolean bitMask() {
+        return PermissionInterceptor.isGranted(authentication, Permission.CAN_SCHEDULE_MACHINES);
+    }
+}
@@ -0,0 +1,67 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import rs.raf.demo.services.MachineSchedulerService;
+import rs.raf.demo.services.MachineService;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of accepting scheduled actions. {@code far} schedules land outside the in-memory
+ * window and are only persisted, {@code near} ones are also put on the timer. Calls rotate
+ * over {@code MACHINES} machines and move on to the next second after each round, so no
+ * submission is coalesced by the conflict index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScheduleSubmissionBenchmark {
+
+    @Param({"far", "near"})
+    public String horizon;
+
+    private ConfigurableApplicationContext context;
+    private MachineSchedulerService schedulerService;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final int MACHINES = 1000;
+
+    private List<Long> machineIds;
+    private int next;
+    private LocalDateTime fireTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("schedule" + horizon);
+        schedulerService = context.getBean(MachineSchedulerService.class);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < MACHINES; i++) {
+            names.add("scheduled-" + i);
+        }
+        machineIds = context.getBean(MachineService.class).createMachines(names, BenchmarkContext.OWNER_MAIL);
+
+        fireTime = "far".equals(horizon) ? LocalDateTime.now().plusDays(30) : LocalDateTime.now().plusMinutes(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object scheduleMachine() {
+        if (next == machineIds.size()) {
+            next = 0;
+            fireTime = fireTime.plusSeconds(1);
+        }
+        return schedulerService.scheduleMachine(machineIds.get(next++), fireTime.format(DATE), fireTime.format(TIME), "Stop");
+    }
+}
@@ -0,0 +1,75 @@
+package rs.raf.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rs.raf.demo.utils.HierarchicalTimingWheel;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting and cancelling {@code jobs} recurring-schedule timeouts, spread over the next day,
+ * on the timing wheel versus a {@link ScheduledThreadPoolExecutor} with remove-on-cancel. The
+ * executor keeps a binary heap, so both operations cost O(log n) there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimingWheelBenchmark {
+
+    private static final Runnable NOOP = () -> { };
+
+    @Param({"100000"})
+    public int jobs;
+
+    private long[] delays;
+    private HierarchicalTimingWheel wheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        delays = new long[jobs];
+        for (int i = 0; i < jobs; i++) {
+            delays[i] = ThreadLocalRandom.current().nextLong(TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(1));
+        }
+        wheel = new HierarchicalTimingWheel(100, Runnable::run);
+        wheel.start();
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int timingWheel() {
+        HierarchicalTimingWheel.Timeout[] timeouts = new HierarchicalTimingWheel.Timeout[jobs];
+        for (int i = 0; i < jobs; i++) {
+            timeouts[i] = wheel.schedule(NOOP, delays[i], TimeUnit.MILLISECONDS);
+        }
+        int cancelled = 0;
+        for (HierarchicalTimingWheel.Timeout timeout : timeouts) {
+            if (timeout.cancel()) cancelled++;
+        }
+        return cancelled;
+    }
+
+    @Benchmark
+    public int scheduledExecutor() {
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[jobs];
+        for (int i = 0; i < jobs; i++) {
+            futures[i] = executor.schedule(NOOP, delays[i], TimeUnit.MILLISECONDS);
+        }
+        int cancelled = 0;
+        for (ScheduledFuture<?> future : futures) {
+            if (future.cancel(false)) cancelled++;
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,73 @@
+package rs.raf.demo.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import rs.raf.demo.utils.BoundedCache;
+import rs.raf.demo.utils.JwtUtil;
+import rs.raf.demo.utils.TokenRevocationStore;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verified-token cache lookups from 8 threads at once, as concurrent requests do them.
+ * {@code synchronizedLru} is the access-ordered LinkedHashMap the cache used to be, where
+ * every hit reorders the map under one lock; {@code bounded} is the segmented LRU
+ * {@link BoundedCache} JwtUtil uses now. {@code verify} runs the whole cached verification on 8 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class TokenCacheBenchmark {
+
+    private static final int TOKENS = 1000;
+
+    private Map<String, Claims> synchronizedLru;
+    private BoundedCache<String, Claims> bounded;
+    private String[] keys;
+    private JwtUtil jwtUtil;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        synchronizedLru = Collections.synchronizedMap(new LinkedHashMap<String, Claims>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claims> eldest) {
+                return size() > 10000;
+            }
+        });
+        bounded = new BoundedCache<>(10000);
+        jwtUtil = new JwtUtil(true, 10000, 15, 7, new TokenRevocationStore());
+
+        keys = new String[TOKENS];
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = jwtUtil.generateToken(BenchmarkContext.OWNER_MAIL + i);
+            Claims claims = jwtUtil.verify(tokens[i]);
+            keys[i] = "key" + i;
+            synchronizedLru.put(keys[i], claims);
+            bounded.put(keys[i], claims);
+        }
+    }
+
+    @Benchmark
+    public Claims synchronizedLru() {
+        return synchronizedLru.get(keys[ThreadLocalRandom.current().nextInt(TOKENS)]);
+    }
+
+    @Benchmark
+    public Claims bounded() {
+        return bounded.get(keys[ThreadLocalRandom.current().nextInt(TOKENS)]);
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return jwtUtil.verify(tokens[ThreadLocalRandom.current().nextInt(TOKENS)]);
+    }
+}
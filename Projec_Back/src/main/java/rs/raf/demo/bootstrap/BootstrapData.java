@@ -2,6 +2,8 @@ package rs.raf.demo.bootstrap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import rs.raf.demo.model.*;
 import rs.raf.demo.model.enums.Status;
@@ -11,21 +13,31 @@ import rs.raf.demo.services.UserService;
 import java.time.LocalDate;
 
 @Component
+@Order(1)
+@ConditionalOnProperty(name = "seed.demo.enabled", havingValue = "true", matchIfMissing = true)
 public class BootstrapData implements CommandLineRunner {
 
     private final UserService userService;
     private final MachineService machineService;
+    private final StartupReport startupReport;
 
     @Autowired
-    public BootstrapData(MachineService machineService, UserService userService) {
+    public BootstrapData(MachineService machineService, UserService userService, StartupReport startupReport) {
         this.userService = userService;
         this.machineService = machineService;
+        this.startupReport = startupReport;
     }
 
     @Override
     public void run(String... args) throws Exception {
 
+        if (!userService.getRoles().isEmpty()) {
+            System.out.println("Data already loaded");
+            return;
+        }
+
         System.out.println("Loading data");
+        long start = System.currentTimeMillis();
 
         userService.saveRole(new Role(null, "can_read_users"));
         userService.saveRole(new Role(null, "can_create_users"));
@@ -78,6 +90,7 @@ public class BootstrapData implements CommandLineRunner {
 
 
 
+        startupReport.record("demo seed", System.currentTimeMillis() - start);
         System.out.println("Data successfully loaded!");
 
     }
@@ -0,0 +1,329 @@
+package rs.raf.demo.bootstrap;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rs.raf.demo.model.ErrorMessage;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.Role;
+import rs.raf.demo.model.User;
+import rs.raf.demo.model.enums.Status;
+import rs.raf.demo.repositories.RoleRepository;
+import rs.raf.demo.repositories.UserRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports users, machines and error history from the fixture file in {@code seed.import.file}
+ * on startup. The file is read as a stream and the entities are inserted in JDBC batches,
+ * committing every {@code seed.import.batch-size} rows.
+ * <p>
+ * A {@code .json} file is an object with {@code users} and {@code machines} arrays:
+ * <pre>
+ * {"users": [{"name": "Ana", "lastName": "Ilic", "mail": "ana@raf.rs", "password": "ana1", "roles": ["can_search_machines"]}],
+ *  "machines": [{"name": "M1", "ownerMail": "ana@raf.rs", "status": "STOPPED", "active": true, "creationDate": "2021-12-01",
+ *                "errors": [{"action": "Start", "date": "2021-12-02", "message": "Machine is already running."}]}]}
+ * </pre>
+ * Any other file is read as CSV with the record type in the first column. Error rows belong
+ * to the machine above them within the same user record, and the last column may contain
+ * commas:
+ * <pre>
+ * user,ana@raf.rs,ana1,Ana,Ilic,can_search_machines|can_start_machines
+ * machine,ana@raf.rs,STOPPED,true,2021-12-01,M1
+ * error,Start,2021-12-02,Machine is already running.
+ * </pre>
+ * Passwords that are already BCrypt hashes are stored as they are; plain ones are hashed
+ * once per distinct password. Existing mails are read once up front, and owners that
+ * were not imported are loaded once per mail.
+ */
+@Component
+@Order(2)
+public class FixtureImporter implements CommandLineRunner {
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final StartupReport startupReport;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${seed.import.file:}")
+    private String importFile;
+
+    @Value("${seed.import.batch-size:1000}")
+    private int batchSize;
+
+
+    @Autowired
+    public FixtureImporter(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder,
+                           PlatformTransactionManager transactionManager, ObjectMapper objectMapper, StartupReport startupReport) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.startupReport = startupReport;
+    }
+
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (importFile == null || importFile.trim().isEmpty()) return;
+
+        long start = System.currentTimeMillis();
+        Import result = importFile(Paths.get(importFile.trim()));
+        long elapsed = System.currentTimeMillis() - start;
+        startupReport.record("fixture import (" + result.users + " users, " + result.machines + " machines, "
+                + result.errors + " errors, " + result.skipped + " skipped)", elapsed);
+    }
+
+
+    public Import importFile(Path path) throws IOException {
+        Import result = new Import();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (path.getFileName().toString().toLowerCase().endsWith(".json")) {
+                readJson(reader, result);
+            } else {
+                readCsv(reader, result);
+            }
+        }
+        result.flush();
+        System.err.println("Imported " + result.users + " users, " + result.machines + " machines and " + result.errors
+                + " errors from " + path + ", skipped " + result.skipped);
+        return result;
+    }
+
+
+    private void readJson(BufferedReader reader, Import result) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(reader)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("The fixture must be a JSON object");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    JsonNode node = parser.readValueAsTree();
+                    if ("users".equals(section)) {
+                        List<String> roles = new ArrayList<>();
+                        node.path("roles").forEach(role -> roles.add(role.asText()));
+                        result.user(node.path("mail").asText(null), node.path("password").asText(null),
+                                node.path("name").asText(null), node.path("lastName").asText(null), roles);
+                    } else if ("machines".equals(section)) {
+                        boolean added = result.machine(node.path("ownerMail").asText(null), node.path("status").asText(null),
+                                node.path("active").asText(null), node.path("creationDate").asText(null), node.path("name").asText(null));
+                        for (JsonNode error : node.path("errors")) {
+                            if (added) {
+                                result.error(error.path("action").asText(null), error.path("date").asText(null), error.path("message").asText(null));
+                            } else {
+                                result.skipped++;
+                            }
+                        }
+                    } else {
+                        result.skipped++;
+                    }
+                }
+            }
+        }
+    }
+
+
+    private void readCsv(BufferedReader reader, Import result) throws IOException {
+        String line;
+        int lineNumber = 0;
+        boolean machineAdded = false;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.startsWith("#")) continue;
+
+            String[] columns = line.split(",", 6);
+            switch (columns[0].trim()) {
+                case "user":
+                    machineAdded = false;
+                    if (columns.length == 6) {
+                        result.user(columns[1], columns[2], columns[3], columns[4], split(columns[5]));
+                        continue;
+                    }
+                    break;
+                case "machine":
+                    if (columns.length == 6) {
+                        machineAdded = result.machine(columns[1], columns[2], columns[3], columns[4], columns[5]);
+                        continue;
+                    }
+                    break;
+                case "error":
+                    columns = line.split(",", 4);
+                    if (columns.length == 4 && machineAdded) {
+                        result.error(columns[1], columns[2], columns[3]);
+                        continue;
+                    }
+                    break;
+                default:
+            }
+            System.err.println("Skipping line " + lineNumber + " of the fixture: " + line);
+            result.skipped++;
+        }
+    }
+
+
+    private static List<String> split(String roles) {
+        List<String> names = new ArrayList<>();
+        for (String role : roles.split("\\|")) {
+            if (!role.trim().isEmpty()) names.add(role.trim());
+        }
+        return names;
+    }
+
+
+    /**
+     * State of one import: the entities waiting for the next batch, the users and roles
+     * resolved so far and the counts for the report.
+     */
+    public class Import {
+        private final List<Object> pending = new ArrayList<>(batchSize);
+        private final Map<String, Role> rolesByName = new HashMap<>();
+        private final Set<String> existingMails;
+        private final Map<String, User> usersByMail = new HashMap<>();
+        private final Map<String, String> encodedPasswords = new HashMap<>();
+        private Machine lastMachine;
+        private int users;
+        private int machines;
+        private int errors;
+        private int skipped;
+
+        private Import() {
+            roleRepository.findAll().forEach(role -> rolesByName.put(role.getName(), role));
+            existingMails = new HashSet<>(userRepository.findAllMails());
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public int getMachines() {
+            return machines;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        private void user(String mail, String password, String name, String lastName, List<String> roleNames) {
+            if (mail == null || password == null || name == null || lastName == null
+                    || usersByMail.containsKey(mail.trim()) || existingMails.contains(mail.trim())) {
+                skipped++;
+                return;
+            }
+
+            User user = new User(null, name.trim(), lastName.trim(), mail.trim(), encode(password));
+            for (String roleName : roleNames) {
+                Role role = rolesByName.get(roleName);
+                if (role != null) user.getRoles().add(role);
+            }
+            usersByMail.put(user.getMail(), user);
+            add(user);
+            users++;
+        }
+
+        private boolean machine(String ownerMail, String status, String active, String creationDate, String name) {
+            User owner = ownerMail != null ? owner(ownerMail.trim()) : null;
+            if (owner == null || name == null) {
+                skipped++;
+                return false;
+            }
+
+            try {
+                lastMachine = new Machine(null,
+                        status == null || status.trim().isEmpty() ? Status.STOPPED : Status.valueOf(status.trim().toUpperCase()),
+                        owner,
+                        active == null || active.trim().isEmpty() || Boolean.parseBoolean(active.trim()),
+                        name.trim(),
+                        creationDate == null || creationDate.trim().isEmpty() ? LocalDate.now() : LocalDate.parse(creationDate.trim()));
+            } catch (RuntimeException e) {
+                skipped++;
+                return false;
+            }
+            add(lastMachine);
+            machines++;
+            return true;
+        }
+
+        private void error(String action, String date, String message) {
+            if (action == null || date == null || message == null) {
+                skipped++;
+                return;
+            }
+
+            try {
+                add(new ErrorMessage(null, message, action.trim(), LocalDate.parse(date.trim()), lastMachine));
+            } catch (RuntimeException e) {
+                skipped++;
+                return;
+            }
+            errors++;
+        }
+
+        private User owner(String mail) {
+            User owner = usersByMail.get(mail);
+            if (owner == null && existingMails.contains(mail)) {
+                owner = userRepository.findByMail(mail);
+                usersByMail.put(mail, owner);
+            }
+            return owner;
+        }
+
+        private String encode(String password) {
+            if (password.startsWith("$2a$") || password.startsWith("$2b$") || password.startsWith("$2y$")) return password;
+            return encodedPasswords.computeIfAbsent(password, passwordEncoder::encode);
+        }
+
+        private void add(Object entity) {
+            pending.add(entity);
+            if (pending.size() >= batchSize) flush();
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) return;
+
+            transactionTemplate.execute(status -> {
+                pending.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+                return null;
+            });
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package rs.raf.demo.bootstrap;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+import java.lang.reflect.Field;
+
+/**
+ * Entities with their own pooled-lo sequence used to take ids from the shared
+ * hibernate_sequence. On a schema created before the switch, ddl-auto creates the new
+ * sequences (tables on MySQL) starting at 1, below ids that already exist. Before anything
+ * else is inserted, every such sequence is moved past the maximum id of its entity; once it
+ * is there this only costs one max() per entity.
+ */
+@Component
+@Order(0)
+public class SequenceSeeder implements CommandLineRunner {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final StartupReport startupReport;
+
+    @Autowired
+    public SequenceSeeder(PlatformTransactionManager transactionManager, StartupReport startupReport) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.startupReport = startupReport;
+    }
+
+    @Override
+    public void run(String... args) {
+        long start = System.currentTimeMillis();
+        Dialect dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        for (EntityType<?> entity : entityManager.getMetamodel().getEntities()) {
+            String sequence = sequenceOf(entity.getJavaType());
+            if (sequence != null) {
+                transactionTemplate.execute(status -> {
+                    seed(dialect, entity.getName(), sequence);
+                    return null;
+                });
+            }
+        }
+        startupReport.record("sequence check", System.currentTimeMillis() - start);
+    }
+
+    private void seed(Dialect dialect, String entityName, String sequence) {
+        Number maxId = (Number) entityManager.createQuery("select max(e.id) from " + entityName + " e").getSingleResult();
+        if (maxId == null) return;
+        long next = maxId.longValue() + 1;
+
+        if (!dialect.supportsSequences()) {
+            int updated = entityManager.createNativeQuery("update " + sequence + " set next_val = ?1 where next_val < ?1")
+                    .setParameter(1, next)
+                    .executeUpdate();
+            if (updated > 0) System.err.println("Sequence " + sequence + " moved to " + next);
+            return;
+        }
+
+        Number current = (Number) entityManager.createNativeQuery(dialect.getSequenceNextValString(sequence)).getSingleResult();
+        if (current.longValue() < next) {
+            entityManager.createNativeQuery("alter sequence " + sequence + " restart with " + next).executeUpdate();
+            System.err.println("Sequence " + sequence + " moved to " + next);
+        }
+    }
+
+    /**
+     * Name of the SequenceStyleGenerator sequence behind the entity's id, or null.
+     */
+    private static String sequenceOf(Class<?> entityClass) {
+        for (Field field : entityClass.getDeclaredFields()) {
+            GenericGenerator generator = field.getAnnotation(GenericGenerator.class);
+            if (generator == null || !SequenceStyleGenerator.class.getName().equals(generator.strategy())) continue;
+            for (Parameter parameter : generator.parameters()) {
+                if (SequenceStyleGenerator.SEQUENCE_PARAM.equals(parameter.name())) return parameter.value();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+package rs.raf.demo.bootstrap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects how long each startup phase (demo seed, fixture import) took and prints them
+ * together with the total time once the application is ready.
+ */
+@Component
+public class StartupReport {
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+
+    public synchronized void record(String phase, long millis) {
+        phases.put(phase, millis);
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void print() {
+        StringBuilder report = new StringBuilder("Startup report:");
+        phases.forEach((phase, millis) -> report.append("\n  ").append(phase).append(": ").append(millis).append(" ms"));
+        report.append("\n  ready after ").append(ManagementFactory.getRuntimeMXBean().getUptime()).append(" ms");
+        System.err.println(report);
+    }
+}
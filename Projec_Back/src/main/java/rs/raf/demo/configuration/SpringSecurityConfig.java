@@ -38,7 +38,9 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
                 .csrf()
                 .disable()
                 .authorizeRequests()
-                .antMatchers("/api/users/login").permitAll()
+                .antMatchers("/api/users/login", "/api/users/refresh", "/api/users/logout").permitAll()
+                .antMatchers("/ws/**").permitAll()
+                .antMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                 .antMatchers("/api/users/add/**").hasAuthority("can_create_users")
                 .antMatchers("/api/users/get/**").hasAuthority("can_read_users")
                 .antMatchers("/api/users/update/**").hasAuthority("can_read_users")
@@ -0,0 +1,52 @@
+package rs.raf.demo.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import rs.raf.demo.filters.PermissionInterceptor;
+
+import javax.annotation.PreDestroy;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final PermissionInterceptor permissionInterceptor;
+    private final ThreadPoolTaskExecutor streamExecutor;
+    private final long streamTimeoutMillis;
+
+    public WebMvcConfig(PermissionInterceptor permissionInterceptor, @Value("${machines.stream.timeout-ms:600000}") long streamTimeoutMillis,
+                        @Value("${machines.stream.pool-size:8}") int poolSize, @Value("${machines.stream.queue-capacity:64}") int queueCapacity) {
+        this.permissionInterceptor = permissionInterceptor;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        this.streamExecutor = new ThreadPoolTaskExecutor();
+        this.streamExecutor.setCorePoolSize(poolSize);
+        this.streamExecutor.setMaxPoolSize(poolSize);
+        this.streamExecutor.setQueueCapacity(queueCapacity);
+        this.streamExecutor.setThreadNamePrefix("stream-");
+        this.streamExecutor.initialize();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(permissionInterceptor);
+    }
+
+    /**
+     * Streaming responses (NDJSON machine and error listings) are written on a bounded pool of
+     * their own, with a timeout long enough for a whole inventory instead of the container's
+     * default of about 30 seconds. Streams beyond the pool and its queue are rejected.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamExecutor);
+        configurer.setDefaultTimeout(streamTimeoutMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdown();
+    }
+}
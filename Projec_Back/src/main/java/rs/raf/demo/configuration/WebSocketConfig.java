@@ -1,23 +1,91 @@
 package rs.raf.demo.configuration;
 
+import io.jsonwebtoken.Claims;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import rs.raf.demo.utils.JwtUtil;
+
+import java.security.Principal;
+import java.util.Collections;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private static final String BROKER_PREFIX = "/topic";
+    private static final String STATUS_TOPIC_PREFIX = "/topic/machine-status/";
+
+    private final JwtUtil jwtUtil;
+
+    public WebSocketConfig(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic"); // prefiks za sve destinacije koje klijent salje beku
+        config.enableSimpleBroker(BROKER_PREFIX); // prefiks za sve destinacije koje klijent salje beku
         config.setApplicationDestinationPrefixes("/app"); // server broadcastuje poruku sa ovim prefiksom
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        registry.addEndpoint("/ws").withSockJS(); // Definišite endpoint za WebSocket komunikaciju
+        registry.addEndpoint("/ws").setAllowedOriginPatterns("*"); // obican WebSocket
+        registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS(); // Definišite endpoint za WebSocket komunikaciju
+    }
+
+    /**
+     * CONNECT must carry the JWT in an {@code Authorization} header, and the only broker topic
+     * a client may subscribe to is the status topic of its own mail. The simple broker matches
+     * subscriptions as Ant patterns, so destinations with pattern characters are rejected
+     * outright: {@code /topic/**} would otherwise receive every owner's events.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null) return message;
+
+                if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+                    String authHeader = accessor.getFirstNativeHeader("Authorization");
+                    if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+                        throw new MessagingException("Missing token");
+                    }
+                    Claims claims = jwtUtil.verify(authHeader.substring("Bearer ".length()));
+                    if (!jwtUtil.isUsableAccessToken(claims)) {
+                        throw new MessagingException("Invalid token");
+                    }
+                    accessor.setUser(new UsernamePasswordAuthenticationToken(claims.getSubject(), null, Collections.emptyList()));
+                } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+                    String destination = accessor.getDestination();
+                    if (!maySubscribe(destination, accessor.getUser())) {
+                        throw new MessagingException("Not allowed to subscribe to " + destination);
+                    }
+                }
+                return message;
+            }
+        });
+    }
+
+    private static boolean maySubscribe(String destination, Principal user) {
+        if (destination == null || destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0) {
+            return false;
+        }
+        if (!destination.startsWith(BROKER_PREFIX)) return true;
+        return user != null && destination.equals(STATUS_TOPIC_PREFIX + user.getName());
     }
 
 }
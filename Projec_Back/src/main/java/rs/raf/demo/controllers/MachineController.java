@@ -1,63 +1,88 @@
 package rs.raf.demo.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.MachineState;
+import rs.raf.demo.filters.PermissionInterceptor;
+import rs.raf.demo.model.enums.LifecycleAction;
+import rs.raf.demo.model.enums.Permission;
 import rs.raf.demo.model.enums.Status;
 import rs.raf.demo.repositories.MachineRepository;
+import rs.raf.demo.requests.BulkActionRequest;
+import rs.raf.demo.requests.BulkCreateRequest;
 import rs.raf.demo.requests.CreateRequest;
 import rs.raf.demo.requests.ScheduleRequest;
+import rs.raf.demo.responses.FleetSummary;
+import rs.raf.demo.responses.MachineResponse;
+import rs.raf.demo.responses.ScheduleResponse;
+import rs.raf.demo.responses.ScheduleResult;
+import rs.raf.demo.services.MachineSchedulerService;
 import rs.raf.demo.services.MachineService;
+import rs.raf.demo.services.RecurringScheduleService;
 import rs.raf.demo.services.UserService;
 import rs.raf.demo.utils.JwtUtil;
+import rs.raf.demo.utils.RequiresPermission;
 
 import javax.websocket.server.PathParam;
-import java.text.ParseException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
-@CrossOrigin
+@CrossOrigin(exposedHeaders = "X-Total-Count")
 @RestController
 @RequestMapping("/api/machines")
 public class MachineController {
+    private static final Set<String> SORTABLE_PROPERTIES = new HashSet<>(Arrays.asList("id", "name", "status", "creationDate"));
+
     private final MachineService machineService;
+    private final MachineSchedulerService machineSchedulerService;
+    private final RecurringScheduleService recurringScheduleService;
     private final UserService userService;
     private final MachineRepository machineRepository;
     private final JwtUtil jwtUtil;
+    private final ObjectMapper objectMapper;
 
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    @Value("${machines.provisioning.max-count:10000}")
+    private int maxBulkCreate;
 
 
     @Autowired
-    public MachineController(MachineService machineService, UserService userService, MachineRepository machineRepository, JwtUtil jwtUtil, SimpMessagingTemplate simpMessagingTemplate) {
+    public MachineController(MachineService machineService, MachineSchedulerService machineSchedulerService, RecurringScheduleService recurringScheduleService, UserService userService, MachineRepository machineRepository, JwtUtil jwtUtil, ObjectMapper objectMapper) {
         this.machineService = machineService;
+        this.machineSchedulerService = machineSchedulerService;
+        this.recurringScheduleService = recurringScheduleService;
         this.userService = userService;
         this.machineRepository = machineRepository;
         this.jwtUtil = jwtUtil;
-        this.simpMessagingTemplate = simpMessagingTemplate;
-    }
-
-
-    private void sendMachineStatusUpdate(Long machineId) {
-        Status newStatus = machineService.getMachineStatus(machineId);
-        simpMessagingTemplate.convertAndSend("/topic/machine-status", newStatus);
+        this.objectMapper = objectMapper;
     }
 
+    @RequiresPermission(Permission.CAN_SEARCH_MACHINES)
     @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Collection<Machine>> getMachinesFiltered(
+    public ResponseEntity<Collection<MachineResponse>> getMachinesFiltered(
             @PathParam("mail") String mail,
             @PathParam("name") String name,
             @PathParam("status") String status,
             @PathParam("dateFrom") String dateFrom,
-            @PathParam("dateTo") String dateTo) {
+            @PathParam("dateTo") String dateTo,
+            @PathParam("page") Integer page,
+            @PathParam("size") Integer size,
+            @PathParam("sort") String sort) {
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate parsedFrom = null;
@@ -74,148 +99,189 @@ public class MachineController {
             machineFilterStatuses = new ArrayList<>(Arrays.asList(status.split(",")));
         }
 
+        Sort parsedSort = parseSort(sort);
+        if (parsedSort == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_search_machines"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (page == null && size == null) {
+            List<MachineResponse> machines = machineService.searchMachines(name, machineFilterStatuses, parsedFrom, parsedTo, mail, parsedSort);
+            return ResponseEntity.ok()
+                    .header("X-Total-Count", String.valueOf(machines.size()))
+                    .body(machines);
         }
 
-        return ResponseEntity.ok().body(machineService.searchMachines(name, machineFilterStatuses, parsedFrom, parsedTo, mail));
+        Pageable pageable = PageRequest.of(page != null ? Math.max(page, 0) : 0, size != null ? Math.max(1, Math.min(size, 500)) : 50, parsedSort);
+        Page<MachineResponse> machines = machineService.searchMachines(name, machineFilterStatuses, parsedFrom, parsedTo, mail, pageable);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(machines.getTotalElements()))
+                .body(machines.getContent());
 
     }
 
+    /**
+     * Parses {@code property[,asc|desc]}, newest first by default. Returns null for a property
+     * that is not sortable or an unknown direction.
+     */
+    private static Sort parseSort(String sort) {
+        if (sort == null || sort.isEmpty()) return Sort.by(Sort.Direction.DESC, "creationDate");
+
+        String[] parts = sort.split(",");
+        if (parts.length > 2 || !SORTABLE_PROPERTIES.contains(parts[0])) return null;
+        Optional<Sort.Direction> direction = parts.length == 2 ? Sort.Direction.fromOptionalString(parts[1]) : Optional.of(Sort.Direction.ASC);
+        return direction.map(value -> Sort.by(value, parts[0])).orElse(null);
+    }
+
     @GetMapping(value = "/get", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Collection<Machine>> getMachinesByUser(@PathParam("mail") String mail){
+    public ResponseEntity<Collection<MachineResponse>> getMachinesByUser(@PathParam("mail") String mail){
         return ResponseEntity.ok().body(machineService.getMachinesByUser(mail));
     }
 
+    @GetMapping(value = "/get/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMachinesByUser(@PathParam("mail") String mail){
+        StreamingResponseBody body = outputStream -> machineService.streamMachinesByUser(mail, machine -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(machine));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/summary", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FleetSummary> getFleetSummary(@PathParam("mail") String mail){
+        return ResponseEntity.ok(machineService.getFleetSummary(mail));
+    }
+
+    @RequiresPermission(Permission.CAN_CREATE_MACHINES)
     @PostMapping(value = "/create", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> createMachine(@RequestBody CreateRequest createRequest) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_create_machines"));
+        Machine createdMachine = machineService.createMachine(createRequest.getName(), createRequest.getMail());
+        return ResponseEntity.ok(MachineResponse.of(createdMachine));
+    }
 
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
+    @RequiresPermission(Permission.CAN_CREATE_MACHINES)
+    @PostMapping(value = "/create/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createMachines(@RequestBody BulkCreateRequest bulkCreateRequest) {
+        List<String> names = bulkCreateRequest.getNames();
+        if (names == null || names.isEmpty() || names.size() > maxBulkCreate || names.contains(null)) {
+            return ResponseEntity.badRequest().build();
         }
-
-        Machine createdMachine = machineService.createMachine(createRequest.getName(), createRequest.getMail());
-        return ResponseEntity.ok(createdMachine);
+        return ResponseEntity.ok(machineService.createMachines(names, bulkCreateRequest.getMail()));
     }
 
+    @RequiresPermission(Permission.CAN_DESTROY_MACHINES)
     @DeleteMapping(value = "/destroy/{id}")
     private ResponseEntity<?> destroyMachine(@PathVariable("id") Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_destroy_machines"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        }
-
         machineService.destroyMachine(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    @RequiresPermission(Permission.CAN_START_MACHINES)
     @GetMapping(value = "/start/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> startMachine(@PathVariable Long id) throws InterruptedException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_start_machines"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build(); // Korisnik nije autentifikovan
-        }
-
-        Optional<Machine> optionalMachine = machineService.findById(id);
+        Optional<MachineState> machineState = machineService.getMachineState(id);
 
-        if(optionalMachine.isPresent() && optionalMachine.get().getStatus() == Status.STOPPED) {
+        if(machineState.isPresent() && machineState.get().getStatus() == Status.STOPPED) {
             machineService.startMachine(id, false);
-            sendMachineStatusUpdate(id);
-
-
-            return ResponseEntity.ok(optionalMachine.get());
+            return ResponseEntity.ok(machineState.get());
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
+    @RequiresPermission(Permission.CAN_STOP_MACHINES)
     @GetMapping(value = "/stop/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> stopMachine(@PathVariable Long id) throws InterruptedException {
-        // Provera dozvola korisnika
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_stop_machines"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build(); // Korisnik nije autentifikovan
-        }
-
-        Optional<Machine> optionalMachine = machineService.findById(id);
+        Optional<MachineState> machineState = machineService.getMachineState(id);
 
-        if(optionalMachine.isPresent() && optionalMachine.get().getStatus() == Status.RUNNING) {
+        if(machineState.isPresent() && machineState.get().getStatus() == Status.RUNNING) {
             machineService.stopMachine(id, false);
-
-            sendMachineStatusUpdate(id);
-            return ResponseEntity.ok(optionalMachine.get());
+            return ResponseEntity.ok(machineState.get());
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
+    @RequiresPermission(Permission.CAN_RESTART_MACHINES)
     @GetMapping(value = "/restart/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> restartMachine(@PathVariable Long id) throws InterruptedException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_restart_machines"));
+        Optional<MachineState> machineState = machineService.getMachineState(id);
 
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
+        if(machineState.isPresent() && machineState.get().getStatus() == Status.RUNNING) {
+            machineService.restartMachine(id, false);
+            return ResponseEntity.ok(machineState.get());
         } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            return ResponseEntity.notFound().build();
         }
+    }
 
-        Optional<Machine> optionalMachine = machineService.findById(id);
+    @PostMapping(value = "/bulk/{action}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> bulkAction(@PathVariable("action") String action, @RequestBody BulkActionRequest bulkActionRequest) {
+        LifecycleAction lifecycleAction = LifecycleAction.fromString(action);
+        if (lifecycleAction == null || bulkActionRequest.getIds() == null || bulkActionRequest.getIds().contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        if(optionalMachine.isPresent() && optionalMachine.get().getStatus() == Status.RUNNING) {
-            machineService.restartMachine(id, false);
-            sendMachineStatusUpdate(id);
-            return ResponseEntity.ok(optionalMachine.get());
-        } else {
-            return ResponseEntity.notFound().build();
+        if (!PermissionInterceptor.isGranted(SecurityContextHolder.getContext().getAuthentication(), lifecycleAction.getPermission())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
+
+        return ResponseEntity.ok(machineService.bulkAction(lifecycleAction, bulkActionRequest.getIds()));
     }
 
-    @PostMapping(value = "/schedule")
-    public ResponseEntity<?> scheduleMachine(@RequestBody ScheduleRequest scheduleRequest) throws ParseException {
-        machineService.scheduleMachine(scheduleRequest.getId(),scheduleRequest.getDate(),scheduleRequest.getTime(),scheduleRequest.getAction());
-        return new ResponseEntity<>(HttpStatus.OK);
+    @PostMapping(value = "/schedule", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> scheduleMachine(@RequestBody ScheduleRequest scheduleRequest) {
+        ScheduleResult result = scheduleRequest.getCron() != null
+                ? recurringScheduleService.scheduleRecurring(scheduleRequest.getId(), scheduleRequest.getCron(), scheduleRequest.getAction())
+                : machineSchedulerService.scheduleMachine(scheduleRequest.getId(), scheduleRequest.getDate(), scheduleRequest.getTime(), scheduleRequest.getAction());
+
+        if (result == null) return ResponseEntity.badRequest().build();
+        if (!result.isAccepted()) return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping(value = "/schedule/get", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ScheduleResponse>> getSchedules(@PathParam("id") Long id, @PathParam("mail") String mail) {
+        List<Long> machineIds = id != null ? Collections.singletonList(id) : machineRepository.findIdsByOwnerMail(mail);
+
+        List<ScheduleResponse> schedules = new ArrayList<>(machineSchedulerService.getScheduledActions(machineIds));
+        schedules.addAll(recurringScheduleService.getRecurringSchedules(machineIds));
+        return ResponseEntity.ok(schedules);
+    }
+
+    @DeleteMapping(value = "/schedule/cancel/{id}")
+    public ResponseEntity<?> cancelSchedule(@PathVariable("id") Long id) {
+        return machineSchedulerService.cancelScheduledAction(id) ? new ResponseEntity<>(HttpStatus.OK) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping(value = "/schedule/recurring/cancel/{id}")
+    public ResponseEntity<?> cancelRecurringSchedule(@PathVariable("id") Long id) {
+        return recurringScheduleService.cancelRecurring(id) ? new ResponseEntity<>(HttpStatus.OK) : ResponseEntity.notFound().build();
     }
 
     @GetMapping(value = "/errors", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getErrorHistory(@PathParam("id") Long id){
-        return ResponseEntity.ok(machineService.findAllErrorsForMachine(id));
+    public ResponseEntity<?> getErrorHistory(@PathParam("id") Long id,
+                                             @PathParam("beforeDate") String beforeDate,
+                                             @PathParam("beforeId") Long beforeId,
+                                             @RequestParam(value = "size", defaultValue = "50") int size){
+        LocalDate parsedBeforeDate = beforeDate != null ? LocalDate.parse(beforeDate, DateTimeFormatter.ofPattern("yyyy-MM-dd")) : null;
+        return ResponseEntity.ok(machineService.getErrorsForMachine(id, parsedBeforeDate, beforeId, Math.max(1, Math.min(size, 500))));
+    }
+
+    @GetMapping(value = "/errors/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamErrorHistory(@PathParam("id") Long id){
+        StreamingResponseBody body = outputStream -> machineService.streamErrorsForMachine(id, error -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(error));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
 }
@@ -1,26 +1,36 @@
 package rs.raf.demo.controllers;
 
-
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 import rs.raf.demo.model.Role;
 import rs.raf.demo.model.User;
 import rs.raf.demo.model.UserInfo;
+import rs.raf.demo.model.UserPrincipal;
+import rs.raf.demo.model.enums.Permission;
 import rs.raf.demo.requests.LoginRequest;
+import rs.raf.demo.requests.RefreshRequest;
 import rs.raf.demo.responses.LoginResponse;
+import rs.raf.demo.responses.UserResponse;
+import rs.raf.demo.services.UserDetailService;
 import rs.raf.demo.services.UserService;
 import rs.raf.demo.utils.JwtUtil;
+import rs.raf.demo.utils.RequiresPermission;
 
 import java.util.List;
 import java.util.Optional;
 
-@CrossOrigin
+@CrossOrigin(exposedHeaders = "X-Total-Count")
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
@@ -28,60 +38,85 @@ public class UserController {
     private final UserService userService;
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
+    private final UserDetailService userDetailService;
 
-    public UserController(UserService userService, AuthenticationManager authenticationManager, JwtUtil jwtUtil) {
+    public UserController(UserService userService, AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserDetailService userDetailService) {
         this.userService = userService;
+        this.userDetailService = userDetailService;
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
     }
 
     @PostMapping(value = "/login",consumes = MediaType.APPLICATION_JSON_VALUE,produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> login (@RequestBody LoginRequest loginRequest) {
+        Authentication authentication;
         try {
-            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(loginRequest.getMail(), loginRequest.getPassword()));
+            authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(loginRequest.getMail(), loginRequest.getPassword()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(401).build();
         }
-        System.out.println(jwtUtil.generateToken(loginRequest.getMail()));
-        return ResponseEntity.ok(new LoginResponse(jwtUtil.generateToken(loginRequest.getMail()), userService.rolesForUser(loginRequest.getMail())));
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        return ResponseEntity.ok(new LoginResponse(jwtUtil.generateToken(principal.getUsername(), principal.getPermissions()), jwtUtil.generateRefreshToken(principal.getUsername()), userService.rolesForUser(principal.getUsername())));
     }
 
-    @GetMapping("/get")
-    public ResponseEntity<?> getUsers() {
-        // Provera dozvola korisnika
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_read_users"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
+    /**
+     * Exchanges a refresh token for a new access/refresh token pair without checking the
+     * password again. The old refresh token is revoked, so each one can be used only once.
+     */
+    @PostMapping(value = "/refresh", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> refresh(@RequestBody RefreshRequest refreshRequest) {
+        Claims claims = refreshRequest.getRefreshToken() != null ? jwtUtil.verifyRefreshToken(refreshRequest.getRefreshToken()) : null;
+        if (claims == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        UserPrincipal principal;
+        try {
+            principal = userDetailService.loadUserByUsername(claims.getSubject());
+        } catch (UsernameNotFoundException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        if (!jwtUtil.revoke(claims)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        String mail = principal.getUsername();
+        return ResponseEntity.ok(new LoginResponse(jwtUtil.generateToken(mail, principal.getPermissions()), jwtUtil.generateRefreshToken(mail), userService.rolesForUser(mail)));
+    }
+
+    @PostMapping(value = "/logout", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> logout(@RequestBody RefreshRequest refreshRequest, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Claims refreshClaims = refreshRequest.getRefreshToken() != null ? jwtUtil.verifyRefreshToken(refreshRequest.getRefreshToken()) : null;
+        if (refreshClaims != null) jwtUtil.revoke(refreshClaims);
+
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                jwtUtil.revoke(jwtUtil.verify(authHeader.substring("Bearer ".length())));
+            } catch (JwtException | IllegalArgumentException e) {
+                // token je vec istekao
+            }
+        }
+        return ResponseEntity.ok().build();
+    }
 
+    @RequiresPermission(Permission.CAN_READ_USERS)
+    @GetMapping("/get")
+    public ResponseEntity<?> getUsers() {
         // Dobavljanje svih korisnika
-        List<User> users = userService.getUsers();
+        List<UserResponse> users = userService.getUsers();
         return ResponseEntity.ok(users);
     }
 
+    @RequiresPermission(Permission.CAN_READ_USERS)
+    @GetMapping("/get/page")
+    public ResponseEntity<List<UserResponse>> getUsersPage(@RequestParam(value = "q", required = false) String query,
+                                                          @PageableDefault(size = 50, sort = "mail") Pageable pageable) {
+        Page<UserResponse> users = userService.searchUsers(query, pageable);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(users.getTotalElements()))
+                .body(users.getContent());
+    }
+
+    @RequiresPermission(Permission.CAN_READ_USERS)
     @GetMapping("/get/{id}")
     public ResponseEntity<?> getUser(@PathVariable("id") Long id) {
-        // Provera dozvola korisnika
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_read_users"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
         // Dobavljanje korisnika po ID-u
         Optional<User> user = userService.getUserById(id);
         if (user.isPresent()) {
@@ -96,62 +131,26 @@ public class UserController {
     }
 
 
+    @RequiresPermission(Permission.CAN_CREATE_USERS)
     @PostMapping(value = "/add", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<User> createUser(@RequestBody User user) {
-        // Provera dozvola korisnika
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_create_users"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
         User createdUser = userService.addUser(user);
         return ResponseEntity.ok(createdUser);
     }
 
 
 
+    @RequiresPermission(Permission.CAN_UPDATE_USERS)
     @PutMapping(value = "/update", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> updateUser(@RequestBody UserInfo user) {
-        // Provera dozvola korisnika
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_update_users"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
         // Ažuriranje korisnika
         User updatedUser = userService.updateUser(user);
         return ResponseEntity.ok(updatedUser);
     }
 
+    @RequiresPermission(Permission.CAN_DELETE_USERS)
     @DeleteMapping(value = "/delete/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable("id") Long id) {
-        // Provera dozvola korisnika
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            boolean hasPermission = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("can_delete_users"));
-
-            if (!hasPermission) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
         // Brisanje korisnika
         userService.deleteUser(id);
         return ResponseEntity.ok().build();
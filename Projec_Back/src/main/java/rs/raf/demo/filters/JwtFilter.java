@@ -1,5 +1,7 @@
 package rs.raf.demo.filters;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -31,20 +33,27 @@ public class JwtFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, FilterChain filterChain) throws ServletException, IOException {
         String authHeader = httpServletRequest.getHeader("Authorization");
         String jwt = null;
+        Claims claims = null;
         String username = null;
 
 
         if(authHeader != null && authHeader.startsWith("Bearer ")){
             jwt = authHeader.substring("Bearer ".length());
-            username = jwtUtil.extractUsername(jwt);
+            try {
+                claims = jwtUtil.verify(jwt);
+                username = claims.getSubject();
+            } catch (JwtException | IllegalArgumentException e) {
+                // istekao ili neispravan token, zahtev ide dalje kao neautentifikovan
+            }
         }
 
         //pronadjemo usera, nasetujemo mu authorities, i proverimo koje ima a koji mu trebaju u SpringSecurityConfig
         if(username != null && SecurityContextHolder.getContext().getAuthentication() == null){
             System.out.println();
-            UserDetails userDetails = this.userService.loadUserByUsername(username);
+            UserDetails userDetails = jwtUtil.principalFromClaims(claims);
+            if (userDetails == null) userDetails = this.userService.loadUserByUsername(username);
 
-            if(jwtUtil.validateToken(jwt, userDetails)){
+            if(jwtUtil.validateClaims(claims, userDetails)){
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
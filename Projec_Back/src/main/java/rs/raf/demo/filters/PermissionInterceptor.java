@@ -0,0 +1,58 @@
+package rs.raf.demo.filters;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import rs.raf.demo.model.UserPrincipal;
+import rs.raf.demo.model.enums.Permission;
+import rs.raf.demo.utils.RequiresPermission;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enforces {@link RequiresPermission}: 401 without an authenticated user, 403 without the
+ * permission. The annotation is looked up once per handler method.
+ */
+@Component
+public class PermissionInterceptor implements HandlerInterceptor {
+
+    private final Map<Method, Optional<Permission>> requiredPermissions = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) return true;
+
+        Optional<Permission> permission = requiredPermissions.computeIfAbsent(((HandlerMethod) handler).getMethod(),
+                method -> Optional.ofNullable(method.getAnnotation(RequiresPermission.class)).map(RequiresPermission::value));
+        if (!permission.isPresent()) return true;
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        if (!isGranted(authentication, permission.get())) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean isGranted(Authentication authentication, Permission permission) {
+        if (authentication == null) return false;
+        if (authentication.getPrincipal() instanceof UserPrincipal) {
+            return ((UserPrincipal) authentication.getPrincipal()).has(permission);
+        }
+        return authentication.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals(permission.getAuthority()));
+    }
+}
@@ -0,0 +1,19 @@
+package rs.raf.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import rs.raf.demo.model.enums.Status;
+
+@Data
+@AllArgsConstructor
+public class MachineState {
+    private Long id;
+    private Status status;
+    private boolean active;
+    private String ownerMail;
+
+    public static MachineState of(Machine machine) {
+        return new MachineState(machine.getId(), machine.getStatus(), machine.isActive(),
+                machine.getCreatedBy() != null ? machine.getCreatedBy().getMail() : null);
+    }
+}
@@ -0,0 +1,35 @@
+package rs.raf.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_recurring_schedule_machine", columnList = "machineId"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_recurring_schedule_machine_cron", columnNames = {"machineId", "cron"}))
+public class RecurringSchedule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recurring_schedule_seq")
+    @GenericGenerator(name = "recurring_schedule_seq", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "recurring_schedule_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
+    private Long id;
+
+    @Column(nullable = false)
+    private Long machineId;
+
+    @Column(nullable = false)
+    private String action;
+
+    @Column(nullable = false)
+    private String cron;
+
+}
@@ -0,0 +1,40 @@
+package rs.raf.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import rs.raf.demo.model.enums.ScheduleState;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_scheduled_action_state_fire_time", columnList = "state, fireTime"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_scheduled_action_machine_fire_time", columnNames = {"machineId", "fireTime"}))
+public class ScheduledAction {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "scheduled_action_seq")
+    @GenericGenerator(name = "scheduled_action_seq", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "scheduled_action_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
+    private Long id;
+
+    @Column(nullable = false)
+    private Long machineId;
+
+    @Column(nullable = false)
+    private String action;
+
+    @Column(nullable = false)
+    private LocalDateTime fireTime;
+
+    @Column(nullable = false)
+    private ScheduleState state;
+
+}
@@ -0,0 +1,78 @@
+package rs.raf.demo.model;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import rs.raf.demo.model.enums.Permission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Authenticated user with its permissions precomputed into a bit mask, so checking a
+ * permission is a single AND instead of a scan over string authorities.
+ */
+public class UserPrincipal implements UserDetails {
+
+    private final String mail;
+    private final String password;
+    private final long permissions;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(String mail, String password, long permissions) {
+        this.mail = mail;
+        this.password = password;
+        this.permissions = permissions;
+
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (Permission permission : Permission.fromMask(permissions)) {
+            authorities.add(new SimpleGrantedAuthority(permission.getAuthority()));
+        }
+        this.authorities = Collections.unmodifiableList(authorities);
+    }
+
+    public long getPermissions() {
+        return permissions;
+    }
+
+    public boolean has(Permission permission) {
+        return (permissions & permission.mask()) != 0;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return mail;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package rs.raf.demo.model.enums;
+
+/**
+ * A lifecycle command and the states it moves a machine through: it is accepted only from
+ * {@code requiredStatus}, shows {@code transitionalStatus} while in flight and ends in
+ * {@code targetStatus}.
+ */
+public enum LifecycleAction {
+    START(Permission.CAN_START_MACHINES, Status.STOPPED, Status.STARTING, Status.RUNNING),
+    STOP(Permission.CAN_STOP_MACHINES, Status.RUNNING, Status.STOPPING, Status.STOPPED),
+    RESTART(Permission.CAN_RESTART_MACHINES, Status.RUNNING, Status.RESTARTING, Status.RUNNING);
+
+    private final Permission permission;
+    private final Status requiredStatus;
+    private final Status transitionalStatus;
+    private final Status targetStatus;
+
+    LifecycleAction(Permission permission, Status requiredStatus, Status transitionalStatus, Status targetStatus) {
+        this.permission = permission;
+        this.requiredStatus = requiredStatus;
+        this.transitionalStatus = transitionalStatus;
+        this.targetStatus = targetStatus;
+    }
+
+    public Permission getPermission() {
+        return permission;
+    }
+
+    public Status getRequiredStatus() {
+        return requiredStatus;
+    }
+
+    public Status getTransitionalStatus() {
+        return transitionalStatus;
+    }
+
+    public Status getTargetStatus() {
+        return targetStatus;
+    }
+
+    public static LifecycleAction fromString(String action) {
+        for (LifecycleAction lifecycleAction : values()) {
+            if (lifecycleAction.name().equalsIgnoreCase(action)) return lifecycleAction;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+package rs.raf.demo.model.enums;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Every permission a role can grant. A set of permissions is carried around as a bit mask
+ * ({@code 1L << ordinal()}), so new values must be appended.
+ */
+public enum Permission {
+    CAN_READ_USERS("can_read_users"),
+    CAN_CREATE_USERS("can_create_users"),
+    CAN_UPDATE_USERS("can_update_users"),
+    CAN_DELETE_USERS("can_delete_users"),
+    CAN_SEARCH_MACHINES("can_search_machines"),
+    CAN_START_MACHINES("can_start_machines"),
+    CAN_STOP_MACHINES("can_stop_machines"),
+    CAN_RESTART_MACHINES("can_restart_machines"),
+    CAN_CREATE_MACHINES("can_create_machines"),
+    CAN_DESTROY_MACHINES("can_destroy_machines"),
+    CAN_SCHEDULE_MACHINES("can_schedule_machines");
+
+    private static final Map<String, Permission> BY_AUTHORITY;
+
+    static {
+        Map<String, Permission> byAuthority = new HashMap<>();
+        for (Permission permission : values()) {
+            byAuthority.put(permission.authority, permission);
+        }
+        BY_AUTHORITY = Collections.unmodifiableMap(byAuthority);
+    }
+
+    private final String authority;
+
+    Permission(String authority) {
+        this.authority = authority;
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    public long mask() {
+        return 1L << ordinal();
+    }
+
+    public static Permission fromAuthority(String authority) {
+        return BY_AUTHORITY.get(authority);
+    }
+
+    public static Set<Permission> fromMask(long mask) {
+        Set<Permission> permissions = EnumSet.noneOf(Permission.class);
+        for (Permission permission : values()) {
+            if ((mask & permission.mask()) != 0) permissions.add(permission);
+        }
+        return permissions;
+    }
+}
@@ -0,0 +1,6 @@
+package rs.raf.demo.model.enums;
+
+public enum ScheduleState {
+    PENDING,
+    QUEUED
+}
@@ -2,7 +2,10 @@ package rs.raf.demo.model.enums;
 
 public enum Status {
     STOPPED("STOPPED"),
-    RUNNING("RUNNING");
+    RUNNING("RUNNING"),
+    STARTING("STARTING"),
+    STOPPING("STOPPING"),
+    RESTARTING("RESTARTING");
 
     Status(String running) {}
 }
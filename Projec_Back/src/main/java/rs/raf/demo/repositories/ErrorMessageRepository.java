@@ -1,15 +1,36 @@
 package rs.raf.demo.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import rs.raf.demo.model.ErrorMessage;
-import rs.raf.demo.model.User;
+import rs.raf.demo.responses.ErrorMessageResponse;
 
-import javax.persistence.Column;
-import javax.persistence.LockModeType;
-import java.util.Collection;
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface ErrorMessageRepository extends JpaRepository<ErrorMessage, Long> {
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    public Collection<ErrorMessage> findAllByMachineId(Long id);
+
+    @Query("select new rs.raf.demo.responses.ErrorMessageResponse(e.id, e.message, e.action, e.date, e.machine.id) " +
+            "from ErrorMessage e where e.machine.id = :machineId order by e.date desc, e.id desc")
+    public List<ErrorMessageResponse> findFirstPageByMachineId(@Param("machineId") Long machineId, Pageable pageable);
+
+    /**
+     * Keyset page: the errors that come after ({@code date}, {@code id}) in newest-first order.
+     */
+    @Query("select new rs.raf.demo.responses.ErrorMessageResponse(e.id, e.message, e.action, e.date, e.machine.id) " +
+            "from ErrorMessage e where e.machine.id = :machineId and (e.date < :date or (e.date = :date and e.id < :id)) " +
+            "order by e.date desc, e.id desc")
+    public List<ErrorMessageResponse> findPageByMachineIdBefore(@Param("machineId") Long machineId, @Param("date") LocalDate date, @Param("id") Long id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new rs.raf.demo.responses.ErrorMessageResponse(e.id, e.message, e.action, e.date, e.machine.id) " +
+            "from ErrorMessage e where e.machine.id = :machineId order by e.date desc, e.id desc")
+    public Stream<ErrorMessageResponse> streamByMachineId(@Param("machineId") Long machineId);
 }
@@ -1,22 +1,60 @@
 package rs.raf.demo.repositories;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import rs.raf.demo.model.Machine;
-import rs.raf.demo.model.User;
+import rs.raf.demo.model.enums.Status;
+import rs.raf.demo.responses.MachineResponse;
 
-import javax.persistence.LockModeType;
-import javax.transaction.Transactional;
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface MachineRepository extends JpaRepository<Machine, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    public Collection<Machine> findAllByCreatedBy(User user);
+public interface MachineRepository extends JpaRepository<Machine, Long>, JpaSpecificationExecutor<Machine> {
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Transactional
+    @Override
+    @EntityGraph(attributePaths = "createdBy")
     public Optional<Machine> findById(Long id);
 
+    @EntityGraph(attributePaths = "createdBy")
+    public List<Machine> findAllByIdIn(Collection<Long> ids);
+
+    @Override
+    @EntityGraph(attributePaths = "createdBy")
+    public Page<Machine> findAll(Specification<Machine> specification, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = "createdBy")
+    public List<Machine> findAll(Specification<Machine> specification, Sort sort);
+
+    @Query("select m.id from Machine m where m.active = true and m.status = :status")
+    public List<Long> findIdsByActiveTrueAndStatus(@Param("status") Status status);
+
+    @Query("select m.id from Machine m join m.createdBy u where u.mail = :mail")
+    public List<Long> findIdsByOwnerMail(@Param("mail") String mail);
+
+    @Query("select u.mail, m.status, m.active, count(m) from Machine m join m.createdBy u group by u.mail, m.status, m.active")
+    public List<Object[]> countByOwnerStatusAndActive();
+
+    @Query("select new rs.raf.demo.responses.MachineResponse(m.id, m.name, m.status, m.active, m.creationDate, u.id, u.mail) " +
+            "from Machine m join m.createdBy u where u.mail = :mail order by m.id")
+    public List<MachineResponse> findResponsesByOwnerMail(@Param("mail") String mail);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new rs.raf.demo.responses.MachineResponse(m.id, m.name, m.status, m.active, m.creationDate, u.id, u.mail) " +
+            "from Machine m join m.createdBy u where u.mail = :mail order by m.id")
+    public Stream<MachineResponse> streamResponsesByOwnerMail(@Param("mail") String mail);
+
 }
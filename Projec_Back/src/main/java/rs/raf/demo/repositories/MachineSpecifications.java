@@ -0,0 +1,53 @@
+package rs.raf.demo.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.User;
+import rs.raf.demo.model.enums.Status;
+
+import javax.persistence.criteria.Predicate;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class MachineSpecifications {
+
+    private MachineSpecifications() {
+    }
+
+    /**
+     * Same filters the search endpoint always had (name contains, matched literally, any of the statuses,
+     * created strictly between dateFrom and dateTo), evaluated by the database.
+     */
+    public static Specification<Machine> search(User owner, String name, List<String> statuses, LocalDate dateFrom, LocalDate dateTo) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("createdBy"), owner));
+
+            if (statuses != null) {
+                List<Status> parsedStatuses = new ArrayList<>();
+                for (String status : statuses) {
+                    for (Status value : Status.values()) {
+                        if (value.name().equals(status)) parsedStatuses.add(value);
+                    }
+                }
+                predicates.add(parsedStatuses.isEmpty() ? cb.disjunction() : root.get("status").in(parsedStatuses));
+            }
+            if (dateFrom != null && dateTo != null) {
+                predicates.add(cb.greaterThan(root.get("creationDate"), dateFrom));
+                predicates.add(cb.lessThan(root.get("creationDate"), dateTo));
+            }
+            if (name != null) {
+                predicates.add(cb.like(cb.lower(root.get("name")), "%" + escapeLike(name.toLowerCase()) + "%", '\\'));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Makes % and _ in the name filter match literally.
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
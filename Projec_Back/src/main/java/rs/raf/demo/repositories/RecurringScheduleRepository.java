@@ -0,0 +1,17 @@
+package rs.raf.demo.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import rs.raf.demo.model.RecurringSchedule;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RecurringScheduleRepository extends JpaRepository<RecurringSchedule, Long> {
+
+    public List<RecurringSchedule> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    public List<RecurringSchedule> findByMachineIdInOrderById(Collection<Long> machineIds);
+}
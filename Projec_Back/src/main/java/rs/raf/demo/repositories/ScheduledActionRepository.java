@@ -0,0 +1,41 @@
+package rs.raf.demo.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import rs.raf.demo.model.ScheduledAction;
+import rs.raf.demo.model.enums.ScheduleState;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ScheduledActionRepository extends JpaRepository<ScheduledAction, Long> {
+
+    public Optional<ScheduledAction> findByMachineIdAndFireTime(Long machineId, LocalDateTime fireTime);
+
+    public List<ScheduledAction> findByMachineIdInOrderByMachineIdAscFireTimeAsc(Collection<Long> machineIds);
+
+    public List<ScheduledAction> findByStateAndFireTimeBeforeOrderByFireTime(ScheduleState state, LocalDateTime horizon, Pageable pageable);
+
+    @Modifying
+    @Query("update ScheduledAction s set s.state = :state where s.id in :ids")
+    public int updateState(@Param("ids") Collection<Long> ids, @Param("state") ScheduleState state);
+
+    @Modifying
+    @Query("update ScheduledAction s set s.state = :to where s.state = :from")
+    public int updateAllStates(@Param("from") ScheduleState from, @Param("to") ScheduleState to);
+
+    @Modifying
+    @Query("delete from ScheduledAction s where s.id = :id")
+    public int deleteAndCount(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from ScheduledAction s where s.machineId = :machineId")
+    public int deleteByMachineId(@Param("machineId") Long machineId);
+}
@@ -1,11 +1,38 @@
 package rs.raf.demo.repositories;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import rs.raf.demo.model.User;
+import rs.raf.demo.responses.UserResponse;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     public User findByMail(String mail);
 
+    @Query("select u.mail from User u")
+    public List<String> findAllMails();
+
+    /**
+     * Users without their roles or password; {@code pattern} (lower case, with wildcards) is
+     * matched against mail, name and last name, or ignored when null.
+     */
+    @Query(value = "select new rs.raf.demo.responses.UserResponse(u.id, u.name, u.lastName, u.mail) from User u " +
+            "where :pattern is null or lower(u.mail) like :pattern or lower(u.name) like :pattern or lower(u.lastName) like :pattern",
+            countQuery = "select count(u) from User u " +
+            "where :pattern is null or lower(u.mail) like :pattern or lower(u.name) like :pattern or lower(u.lastName) like :pattern")
+    public Page<UserResponse> findResponses(@Param("pattern") String pattern, Pageable pageable);
+
+    /**
+     * (user id, role) pairs for all the given users in one query.
+     */
+    @Query("select u.id, r from User u join u.roles r where u.id in :ids")
+    public List<Object[]> findRolesByUserIds(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,10 @@
+package rs.raf.demo.requests;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkActionRequest {
+    private List<Long> ids;
+}
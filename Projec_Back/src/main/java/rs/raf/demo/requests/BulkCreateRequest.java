@@ -0,0 +1,11 @@
+package rs.raf.demo.requests;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkCreateRequest {
+    private String mail;
+    private List<String> names;
+}
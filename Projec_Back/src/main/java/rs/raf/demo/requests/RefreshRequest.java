@@ -0,0 +1,8 @@
+package rs.raf.demo.requests;
+
+import lombok.Data;
+
+@Data
+public class RefreshRequest {
+    private String refreshToken;
+}
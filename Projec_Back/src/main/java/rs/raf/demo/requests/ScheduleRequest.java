@@ -8,4 +8,5 @@ public class ScheduleRequest {
     private String date;
     private String time;
     private String action;
+    private String cron;
 }
@@ -0,0 +1,16 @@
+package rs.raf.demo.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class ErrorMessageResponse {
+    private Long id;
+    private String message;
+    private String action;
+    private LocalDate date;
+    private Long machineId;
+}
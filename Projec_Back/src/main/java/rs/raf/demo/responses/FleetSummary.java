@@ -0,0 +1,16 @@
+package rs.raf.demo.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import rs.raf.demo.model.enums.Status;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class FleetSummary {
+    private String ownerMail;
+    private Map<Status, Long> statuses;
+    private long active;
+    private long inactive;
+}
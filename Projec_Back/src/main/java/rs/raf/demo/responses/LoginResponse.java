@@ -8,10 +8,12 @@ import java.util.List;
 @Data
 public class LoginResponse {
     private String jwt;
+    private String refreshToken;
     private List<Role> roles;
 
-    public LoginResponse(String jwt, List<Role> roles){
+    public LoginResponse(String jwt, String refreshToken, List<Role> roles){
         this.roles = roles;
         this.jwt = jwt;
+        this.refreshToken = refreshToken;
     }
 }
@@ -0,0 +1,27 @@
+package rs.raf.demo.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.User;
+import rs.raf.demo.model.enums.Status;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class MachineResponse {
+    private Long id;
+    private String name;
+    private Status status;
+    private boolean active;
+    private LocalDate creationDate;
+    private Long ownerId;
+    private String ownerMail;
+
+    public static MachineResponse of(Machine machine) {
+        User owner = machine.getCreatedBy();
+        return new MachineResponse(machine.getId(), machine.getName(), machine.getStatus(), machine.isActive(), machine.getCreationDate(),
+                owner != null ? owner.getId() : null, owner != null ? owner.getMail() : null);
+    }
+}
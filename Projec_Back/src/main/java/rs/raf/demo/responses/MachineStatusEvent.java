@@ -0,0 +1,13 @@
+package rs.raf.demo.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import rs.raf.demo.model.enums.Status;
+
+@Data
+@AllArgsConstructor
+public class MachineStatusEvent {
+    private Long id;
+    private Status status;
+    private boolean active;
+}
@@ -0,0 +1,20 @@
+package rs.raf.demo.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A pending schedule. Recurring schedules carry their cron expression and the time of their
+ * next firing; one-shot schedules have no cron.
+ */
+@Data
+@AllArgsConstructor
+public class ScheduleResponse {
+    private Long id;
+    private Long machineId;
+    private String action;
+    private LocalDateTime fireTime;
+    private String cron;
+}
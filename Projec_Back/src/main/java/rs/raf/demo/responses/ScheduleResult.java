@@ -0,0 +1,12 @@
+package rs.raf.demo.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ScheduleResult {
+    private Long id;
+    private boolean accepted;
+    private String message;
+}
@@ -0,0 +1,23 @@
+package rs.raf.demo.responses;
+
+import lombok.Data;
+import rs.raf.demo.model.Role;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class UserResponse {
+    private Long id;
+    private String name;
+    private String lastName;
+    private String mail;
+    private List<Role> roles = new ArrayList<>();
+
+    public UserResponse(Long id, String name, String lastName, String mail) {
+        this.id = id;
+        this.name = name;
+        this.lastName = lastName;
+        this.mail = mail;
+    }
+}
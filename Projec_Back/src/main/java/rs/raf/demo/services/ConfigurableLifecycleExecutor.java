@@ -0,0 +1,114 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LifecycleExecutor} whose workers are chosen with {@code machines.executor.mode}:
+ * <ul>
+ *     <li>{@code bounded} - a fixed pool of {@code machines.executor.pool-size} platform threads</li>
+ *     <li>{@code work-stealing} - a fork/join pool with {@code machines.executor.pool-size} parallelism</li>
+ *     <li>{@code virtual} - a new virtual thread per task (JDK 21+, falls back to {@code bounded})</li>
+ * </ul>
+ * A single timer thread holds delayed tasks for every mode.
+ */
+@Component
+public class ConfigurableLifecycleExecutor implements LifecycleExecutor, MeterBinder {
+
+    public enum Mode {
+        BOUNDED, WORK_STEALING, VIRTUAL;
+
+        public static Mode fromString(String mode) {
+            return valueOf(mode.trim().replace('-', '_').toUpperCase());
+        }
+    }
+
+    private final Mode mode;
+    private final ExecutorService workers;
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+
+
+    public ConfigurableLifecycleExecutor(@Value("${machines.executor.mode:bounded}") String mode, @Value("${machines.executor.pool-size:10}") int poolSize) {
+        Mode requested = Mode.fromString(mode);
+        ExecutorService virtualWorkers = requested == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        if (requested == Mode.VIRTUAL && virtualWorkers == null) {
+            System.err.println("Virtual threads are not available on Java " + System.getProperty("java.version") + ", using a bounded pool");
+            requested = Mode.BOUNDED;
+        }
+
+        this.mode = requested;
+        switch (this.mode) {
+            case WORK_STEALING:
+                this.workers = Executors.newWorkStealingPool(poolSize);
+                break;
+            case VIRTUAL:
+                this.workers = virtualWorkers;
+                break;
+            default:
+                this.workers = Executors.newFixedThreadPool(poolSize);
+        }
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+
+    public Mode getMode() {
+        return mode;
+    }
+
+
+    @Override
+    public void execute(Runnable task) {
+        workers.execute(() -> runSafely(task));
+    }
+
+
+    @Override
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        timer.schedule(() -> execute(task), delay, unit);
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(workers, "machines.lifecycle", Collections.emptyList()).bindTo(registry);
+        new ExecutorServiceMetrics(timer, "machines.lifecycle.timer", Collections.emptyList()).bindTo(registry);
+    }
+
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Looked up reflectively so the application still builds and runs on Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,207 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rs.raf.demo.model.ErrorMessage;
+import rs.raf.demo.model.Machine;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind recorder for {@link ErrorMessage}s. Callers only put the error on a bounded
+ * queue; a dedicated writer thread inserts them in batches of {@code machines.errors.writer.batch-size},
+ * or whatever arrived within {@code machines.errors.writer.flush-interval-ms}. What happens
+ * when the queue is full is set by {@code machines.errors.writer.overflow-policy}:
+ * <ul>
+ *     <li>{@code block} - the caller waits for free space</li>
+ *     <li>{@code drop-newest} - the new error is dropped</li>
+ *     <li>{@code drop-oldest} - the oldest queued error is dropped to make room</li>
+ * </ul>
+ * If a batch insert fails, for example on a foreign key to a machine that is gone, the batch
+ * is retried one row per transaction so only the rows that cannot be written are lost; those
+ * are logged with their content and counted.
+ */
+@Component
+public class ErrorMessageWriter implements MeterBinder {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP_NEWEST, DROP_OLDEST;
+
+        public static OverflowPolicy fromString(String policy) {
+            return valueOf(policy.trim().replace('-', '_').toUpperCase());
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingError {
+        private final Long machineId;
+        private final String action;
+        private final String message;
+        private final LocalDate date;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ErrorMessageWriter.class);
+
+    private final BlockingQueue<PendingError> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final TransactionTemplate transactionTemplate;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread writerThread = new Thread(this::writeLoop, "error-message-writer");
+    private volatile boolean running = true;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    public ErrorMessageWriter(@Value("${machines.errors.writer.queue-capacity:10000}") int queueCapacity,
+                              @Value("${machines.errors.writer.batch-size:500}") int batchSize,
+                              @Value("${machines.errors.writer.flush-interval-ms:500}") long flushIntervalMillis,
+                              @Value("${machines.errors.writer.overflow-policy:drop-oldest}") String overflowPolicy,
+                              PlatformTransactionManager transactionManager) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = OverflowPolicy.fromString(overflowPolicy);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+
+    public void record(Long machineId, String action, String message) {
+        PendingError error = new PendingError(machineId, action, message, LocalDate.now());
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(error);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(error)) {
+                    if (queue.poll() != null) dropped.increment();
+                }
+                break;
+            default:
+                if (!queue.offer(error)) dropped.increment();
+        }
+    }
+
+
+    private void writeLoop() {
+        List<PendingError> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingError first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                while (running && batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() == batchSize || remaining <= 0) break;
+                    PendingError next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                log.error("Error message writer failed on a batch of {}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+
+    private void write(List<PendingError> batch) {
+        try {
+            insert(batch);
+            written.add(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Inserting {} error messages failed, retrying them one by one: {}", batch.size(), e.getMessage());
+            for (PendingError error : batch) {
+                try {
+                    insert(Collections.singletonList(error));
+                    written.increment();
+                } catch (RuntimeException rowFailure) {
+                    failed.increment();
+                    log.error("Dropping error message for machine {} ({} on {}: {})", error.machineId, error.action, error.date, error.message, rowFailure);
+                }
+            }
+        }
+    }
+
+
+    private void insert(List<PendingError> errors) {
+        transactionTemplate.execute(status -> {
+            for (PendingError error : errors) {
+                Machine machine = error.machineId != null ? entityManager.getReference(Machine.class, error.machineId) : null;
+                entityManager.persist(new ErrorMessage(null, error.message, error.action, error.date, machine));
+            }
+            return null;
+        });
+    }
+
+
+    /**
+     * Stops accepting new work once the queue is drained and waits for the last batch.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("machines.errors.writer.queued", queue, BlockingQueue::size)
+                .description("Error messages waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("machines.errors.writer.dropped", dropped, LongAdder::doubleValue)
+                .description("Error messages dropped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("machines.errors.writer.written", written, LongAdder::doubleValue)
+                .description("Error messages inserted by the writer")
+                .register(registry);
+        FunctionCounter.builder("machines.errors.writer.failed", failed, LongAdder::doubleValue)
+                .description("Error messages that could not be inserted, even on their own")
+                .register(registry);
+    }
+}
@@ -0,0 +1,206 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rs.raf.demo.model.enums.Status;
+import rs.raf.demo.repositories.MachineRepository;
+import rs.raf.demo.responses.FleetSummary;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Number of machines per owner and status, kept up to date by {@link MachineService} on every
+ * creation, transition and destroy, so a summary never has to touch the database. Active
+ * machines are counted by status, destroyed ones only as inactive.
+ * <p>
+ * The counters are rebuilt from the database once the application is ready and then every
+ * {@code machines.fleet.reconcile-interval-ms}, which corrects drift from writes that bypass
+ * {@link MachineService}. Changes are applied when the transaction making them commits, and
+ * each commit holds the read side of a gate from just before the database commit until the
+ * change is applied. The rebuild holds the write side while its query runs, so every change
+ * is either committed before the query and already applied to the old counters, or committed
+ * after it and applied to the rebuilt ones; none is lost or counted twice. Commits that change
+ * counters wait for the query, which runs once per interval.
+ */
+@Component
+public class FleetStatusCounters implements MeterBinder {
+
+    private static class OwnerCounters {
+        private final LongAdder[] byStatus = new LongAdder[Status.values().length];
+        private final LongAdder inactive = new LongAdder();
+
+        private OwnerCounters() {
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] = new LongAdder();
+            }
+        }
+    }
+
+    private final MachineRepository machineRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock commitGate = new ReentrantReadWriteLock();
+    private volatile Map<String, OwnerCounters> counters = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public FleetStatusCounters(MachineRepository machineRepository, PlatformTransactionManager transactionManager) {
+        this.machineRepository = machineRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${machines.fleet.reconcile-interval-ms:600000}", initialDelayString = "${machines.fleet.reconcile-interval-ms:600000}")
+    public synchronized void reconcile() {
+        Map<String, OwnerCounters> loaded = transactionTemplate.execute(status -> {
+            // the transaction already holds its connection: commits waiting at the gate hold
+            // theirs, and could otherwise drain the pool while the gate is closed
+            commitGate.writeLock().lock();
+            try {
+                Map<String, OwnerCounters> reloaded = load();
+                counters = reloaded;
+                return reloaded;
+            } finally {
+                commitGate.writeLock().unlock();
+            }
+        });
+        System.err.println("Reconciled machine counters for " + loaded.size() + " owners");
+    }
+
+
+    private Map<String, OwnerCounters> load() {
+        Map<String, OwnerCounters> loaded = new ConcurrentHashMap<>();
+        for (Object[] row : machineRepository.countByOwnerStatusAndActive()) {
+            OwnerCounters owner = loaded.computeIfAbsent((String) row[0], mail -> new OwnerCounters());
+            long count = (Long) row[3];
+            if (Boolean.TRUE.equals(row[2])) {
+                owner.byStatus[((Status) row[1]).ordinal()].add(count);
+            } else {
+                owner.inactive.add(count);
+            }
+        }
+        return loaded;
+    }
+
+
+    public void created(String ownerMail, Status status, long count) {
+        onCommit(current -> countersOf(current, ownerMail).byStatus[status.ordinal()].add(count));
+    }
+
+
+    public void moved(Collection<String> ownerMails, Status from, Status to) {
+        if (ownerMails.isEmpty()) return;
+        onCommit(current -> {
+            for (String ownerMail : ownerMails) {
+                OwnerCounters owner = countersOf(current, ownerMail);
+                owner.byStatus[from.ordinal()].decrement();
+                owner.byStatus[to.ordinal()].increment();
+            }
+        });
+    }
+
+
+    public void deactivated(String ownerMail, Status status) {
+        onCommit(current -> {
+            OwnerCounters owner = countersOf(current, ownerMail);
+            owner.byStatus[status.ordinal()].decrement();
+            owner.inactive.increment();
+        });
+    }
+
+
+    /**
+     * Called inside the transaction that makes the change. The gate is taken before the
+     * database commit and released once the change has been applied, or on rollback.
+     */
+    private void onCommit(Consumer<Map<String, OwnerCounters>> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commitGate.readLock().lock();
+            try {
+                change.accept(counters);
+            } finally {
+                commitGate.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean gated;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitGate.readLock().lock();
+                gated = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                change.accept(counters);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (gated) {
+                    gated = false;
+                    commitGate.readLock().unlock();
+                }
+            }
+        });
+    }
+
+
+    public FleetSummary summaryOf(String ownerMail) {
+        Map<Status, Long> statuses = new EnumMap<>(Status.class);
+        OwnerCounters owner = ownerMail != null ? counters.get(ownerMail) : null;
+        long active = 0;
+        for (Status status : Status.values()) {
+            long count = owner != null ? owner.byStatus[status.ordinal()].sum() : 0;
+            statuses.put(status, count);
+            active += count;
+        }
+        long inactive = owner != null ? owner.inactive.sum() : 0;
+        return new FleetSummary(ownerMail, statuses, active, inactive);
+    }
+
+
+    private static OwnerCounters countersOf(Map<String, OwnerCounters> counters, String ownerMail) {
+        return counters.computeIfAbsent(ownerMail == null ? "" : ownerMail, mail -> new OwnerCounters());
+    }
+
+
+    private long total(Status status) {
+        long total = 0;
+        for (OwnerCounters owner : counters.values()) {
+            total += owner.byStatus[status.ordinal()].sum();
+        }
+        return total;
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Status status : Status.values()) {
+            Gauge.builder("machines.fleet", this, counters -> counters.total(status))
+                    .description("Active machines by status")
+                    .tag("status", status.name())
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package rs.raf.demo.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains lifecycle operations on shutdown. It stops after the web server has finished its
+ * graceful shutdown and before the executors are destroyed: new operations are rejected,
+ * scheduled actions that come due stay in the database, and commands already queued on a
+ * dispatcher stripe plus accepted transitions get up to {@code machines.shutdown.drain-timeout-ms}
+ * to finish. Whatever is still in flight keeps its transitional status and is resumed by
+ * {@link MachineService#resumeTransitions()} on the next startup. That assumes a single
+ * instance: the next instance to start takes over every transitional machine in the database.
+ */
+@Component
+public class LifecycleDrain implements SmartLifecycle {
+
+    private final MachineService machineService;
+    private volatile boolean running;
+
+    @Value("${machines.shutdown.drain-timeout-ms:30000}")
+    private long drainTimeoutMillis;
+
+
+    @Autowired
+    public LifecycleDrain(MachineService machineService) {
+        this.machineService = machineService;
+    }
+
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+
+    @Override
+    public void stop() {
+        machineService.stopAccepting();
+        try {
+            int remaining = machineService.awaitInFlight(drainTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (remaining > 0) {
+                System.err.println(remaining + " lifecycle operations still pending, machines in flight will be resumed on the next startup");
+            } else {
+                System.err.println("All lifecycle operations drained");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+    }
+
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    /**
+     * Below the web server's graceful shutdown phase, so requests in progress are served first.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2048;
+    }
+}
@@ -0,0 +1,14 @@
+package rs.raf.demo.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs lifecycle work for machines. Delayed tasks wait on a timer and are only handed to the
+ * executor once they are due, so a waiting transition never occupies a worker.
+ */
+public interface LifecycleExecutor {
+
+    void execute(Runnable task);
+
+    void schedule(Runnable task, long delay, TimeUnit unit);
+}
@@ -0,0 +1,67 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import rs.raf.demo.model.enums.LifecycleAction;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the machine lifecycle engine, exposed through Actuator at /actuator/prometheus.
+ */
+@Component
+public class LifecycleMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer scheduleLag;
+
+
+    @Autowired
+    public LifecycleMetrics(MeterRegistry registry, MachineCommandDispatcher commandDispatcher) {
+        this.registry = registry;
+        this.scheduleLag = Timer.builder("machines.schedule.lag")
+                .description("Delay between the requested and the actual firing time of a scheduled action")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        Gauge.builder("machines.dispatcher.queued", commandDispatcher, MachineCommandDispatcher::queuedCommands)
+                .description("Commands waiting on the dispatcher stripes")
+                .register(registry);
+    }
+
+
+    /**
+     * Records the time from the request until the target status was saved, once per machine
+     * that completed the transition.
+     */
+    public void recordTransition(LifecycleAction action, long requestedAtNanos, int machines) {
+        Timer timer = Timer.builder("machines.transition")
+                .description("Time from a lifecycle request until the target status is saved")
+                .tag("action", action.name())
+                .publishPercentileHistogram()
+                .register(registry);
+        long elapsed = System.nanoTime() - requestedAtNanos;
+        for (int i = 0; i < machines; i++) {
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    public void recordScheduleLag(Duration lag) {
+        scheduleLag.record(lag.isNegative() ? Duration.ZERO : lag);
+    }
+
+
+    public void recordError(String action) {
+        Counter.builder("machines.errors")
+                .description("Error messages written for machine actions")
+                .tag("action", action == null ? "UNKNOWN" : action.toUpperCase())
+                .register(registry)
+                .increment();
+    }
+}
@@ -0,0 +1,95 @@
+package rs.raf.demo.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs every command that changes a machine on a single-threaded stripe chosen by the
+ * machine id. Commands for the same machine are therefore applied one at a time and in
+ * submission order, which replaces the row locks that used to guard each transition.
+ */
+@Component
+public class MachineCommandDispatcher {
+
+    private final ThreadPoolExecutor[] stripes;
+
+
+    public MachineCommandDispatcher(@Value("${machines.dispatcher.stripes:16}") int stripeCount) {
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        }
+    }
+
+
+    public int stripeOf(Long machineId) {
+        int hash = machineId.hashCode();
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % stripes.length;
+    }
+
+
+    public void execute(Long machineId, Runnable command) {
+        stripes[stripeOf(machineId)].execute(() -> runSafely(command));
+    }
+
+
+    public <T> CompletableFuture<T> submit(Long machineId, Supplier<T> command) {
+        return submitToStripe(stripeOf(machineId), command);
+    }
+
+
+    public <T> CompletableFuture<T> submitToStripe(int stripe, Supplier<T> command) {
+        return CompletableFuture.supplyAsync(command, stripes[stripe]);
+    }
+
+
+    /**
+     * Groups machine ids by the stripe that owns them, so a batch can be handled with one
+     * command per stripe instead of one per machine.
+     */
+    public Map<Integer, List<Long>> partition(Collection<Long> machineIds) {
+        Map<Integer, List<Long>> partitions = new LinkedHashMap<>();
+        for (Long machineId : machineIds) {
+            partitions.computeIfAbsent(stripeOf(machineId), stripe -> new ArrayList<>()).add(machineId);
+        }
+        return partitions;
+    }
+
+
+    public int queuedCommands() {
+        int queued = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            queued += stripe.getQueue().size();
+        }
+        return queued;
+    }
+
+
+    private void runSafely(Runnable command) {
+        try {
+            command.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package rs.raf.demo.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rs.raf.demo.model.MachineState;
+import rs.raf.demo.model.RecurringSchedule;
+import rs.raf.demo.model.ScheduledAction;
+import rs.raf.demo.model.enums.LifecycleAction;
+import rs.raf.demo.model.enums.ScheduleState;
+import rs.raf.demo.repositories.ScheduledActionRepository;
+import rs.raf.demo.responses.ScheduleResponse;
+import rs.raf.demo.responses.ScheduleResult;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps scheduled machine actions in the database and only holds the ones due within
+ * the next {@code machines.scheduler.window-seconds} on the timer. Rows are PENDING until
+ * they enter the window, QUEUED while they wait on the timer and deleted once fired or
+ * cancelled, or when their machine is destroyed; a timer entry whose row is gone does nothing.
+ * <p>
+ * A machine has at most one action per second, enforced by a unique (machine, fire time)
+ * constraint: a second request for the same action is coalesced into the existing one, a
+ * different one is rejected, as is an action that collides with a different one of a recurring
+ * schedule. The checks and the insert run as one command on the machine's
+ * {@link MachineCommandDispatcher} stripe, the same one recurring schedules use. The check and
+ * the per-machine listings use that index, so no pending action is held in memory outside
+ * the window.
+ */
+@Service
+public class MachineSchedulerService {
+
+    private static final DateTimeFormatter FIRE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ScheduledActionRepository scheduledActionRepository;
+    private final MachineService machineService;
+    private final RecurringScheduleService recurringScheduleService;
+    private final MachineCommandDispatcher commandDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final LifecycleMetrics metrics;
+    private final LifecycleExecutor lifecycleExecutor;
+
+    @Value("${machines.scheduler.window-seconds:300}")
+    private long windowSeconds;
+
+    @Value("${machines.scheduler.batch-size:500}")
+    private int batchSize;
+
+
+    @Autowired
+    public MachineSchedulerService(ScheduledActionRepository scheduledActionRepository, MachineService machineService, RecurringScheduleService recurringScheduleService, MachineCommandDispatcher commandDispatcher, PlatformTransactionManager transactionManager, LifecycleMetrics metrics, LifecycleExecutor lifecycleExecutor) {
+        this.scheduledActionRepository = scheduledActionRepository;
+        this.machineService = machineService;
+        this.recurringScheduleService = recurringScheduleService;
+        this.commandDispatcher = commandDispatcher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+        this.lifecycleExecutor = lifecycleExecutor;
+        machineService.addDestroyListener(scheduledActionRepository::deleteByMachineId);
+    }
+
+
+    /**
+     * Returns null if the machine does not exist or was destroyed, the action is unknown, the date or time is
+     * missing or malformed, or the time has passed.
+     */
+    public ScheduleResult scheduleMachine(Long id, String date, String time, String action) {
+        LocalDateTime fireTime = parseFireTime(date, time);
+        LifecycleAction lifecycleAction = LifecycleAction.fromString(action);
+        if (id == null || fireTime == null || lifecycleAction == null) return null;
+        System.err.println("Machine scheduled for " + fireTime);
+        if (!machineService.getMachineState(id).isPresent() || !fireTime.isAfter(LocalDateTime.now())) return null;
+
+        return commandDispatcher.submit(id, () -> addAction(id, fireTime, lifecycleAction)).join();
+    }
+
+
+    private ScheduleResult addAction(Long id, LocalDateTime fireTime, LifecycleAction lifecycleAction) {
+        if (!machineService.getMachineState(id).filter(MachineState::isActive).isPresent()) return null;
+
+        Optional<ScheduledAction> existing = scheduledActionRepository.findByMachineIdAndFireTime(id, fireTime);
+        if (existing.isPresent()) return existingResult(existing.get(), lifecycleAction);
+
+        Optional<RecurringSchedule> recurring = recurringScheduleService.findConflict(id, fireTime, lifecycleAction);
+        if (recurring.isPresent()) {
+            return new ScheduleResult(recurring.get().getId(), false, "'" + recurring.get().getAction() + "' runs at that time on the schedule '" + recurring.get().getCron() + "'.");
+        }
+
+        boolean inWindow = fireTime.isBefore(LocalDateTime.now().plusSeconds(windowSeconds));
+        ScheduledAction scheduledAction = new ScheduledAction(null, id, lifecycleAction.name(), fireTime, inWindow ? ScheduleState.QUEUED : ScheduleState.PENDING);
+        try {
+            scheduledActionRepository.save(scheduledAction);
+        } catch (DataIntegrityViolationException e) {
+            // another request took the same second in the meantime
+            return scheduledActionRepository.findByMachineIdAndFireTime(id, fireTime)
+                    .map(taken -> existingResult(taken, lifecycleAction))
+                    .orElseThrow(() -> e);
+        }
+        if (inWindow) enqueue(scheduledAction);
+        return new ScheduleResult(scheduledAction.getId(), true, null);
+    }
+
+
+    private static LocalDateTime parseFireTime(String date, String time) {
+        if (date == null || time == null) return null;
+        try {
+            return LocalDateTime.parse(date.trim() + " " + time.trim(), FIRE_TIME_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+
+    private static ScheduleResult existingResult(ScheduledAction existing, LifecycleAction action) {
+        if (LifecycleAction.fromString(existing.getAction()) == action) {
+            return new ScheduleResult(existing.getId(), true, "The action is already scheduled.");
+        }
+        return new ScheduleResult(existing.getId(), false, "'" + existing.getAction() + "' is already scheduled for the same time.");
+    }
+
+
+    /**
+     * Deletes the action. If it is already on the timer it finds no row when it fires and
+     * does nothing.
+     */
+    public boolean cancelScheduledAction(Long scheduleId) {
+        return transactionTemplate.execute(status -> scheduledActionRepository.deleteAndCount(scheduleId)) > 0;
+    }
+
+
+    /**
+     * Pending actions of the machines, by machine and fire time.
+     */
+    public List<ScheduleResponse> getScheduledActions(Collection<Long> machineIds) {
+        if (machineIds.isEmpty()) return Collections.emptyList();
+
+        return scheduledActionRepository.findByMachineIdInOrderByMachineIdAscFireTimeAsc(machineIds).stream()
+                .map(scheduledAction -> new ScheduleResponse(scheduledAction.getId(), scheduledAction.getMachineId(),
+                        scheduledAction.getAction(), scheduledAction.getFireTime(), null))
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Moves every PENDING action that falls inside the window onto the timer, one indexed
+     * batch at a time.
+     */
+    @Scheduled(fixedDelayString = "${machines.scheduler.poll-interval-ms:60000}")
+    public synchronized void loadDueActions() {
+        List<ScheduledAction> batch;
+        do {
+            LocalDateTime horizon = LocalDateTime.now().plusSeconds(windowSeconds);
+            batch = transactionTemplate.execute(status -> {
+                List<ScheduledAction> due = scheduledActionRepository.findByStateAndFireTimeBeforeOrderByFireTime(
+                        ScheduleState.PENDING, horizon, PageRequest.of(0, batchSize));
+                if (!due.isEmpty()) {
+                    scheduledActionRepository.updateState(
+                            due.stream().map(ScheduledAction::getId).collect(Collectors.toList()), ScheduleState.QUEUED);
+                }
+                return due;
+            });
+            batch.forEach(this::enqueue);
+        } while (batch.size() == batchSize);
+    }
+
+
+    /**
+     * Actions that were QUEUED when the previous instance stopped never fired, so they are
+     * handed back to the loader; anything already overdue fires right away.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverActions() {
+        int recovered = transactionTemplate.execute(status ->
+                scheduledActionRepository.updateAllStates(ScheduleState.QUEUED, ScheduleState.PENDING));
+        System.err.println("Recovered " + recovered + " queued scheduled actions");
+        loadDueActions();
+    }
+
+
+    private void enqueue(ScheduledAction scheduledAction) {
+        long fireAt = scheduledAction.getFireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        lifecycleExecutor.schedule(() -> fire(scheduledAction), fireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    private void fire(ScheduledAction scheduledAction) {
+        if (!machineService.isAccepting()) return;
+
+        metrics.recordScheduleLag(Duration.between(scheduledAction.getFireTime(), LocalDateTime.now()));
+        try {
+            int deleted = transactionTemplate.execute(status -> scheduledActionRepository.deleteAndCount(scheduledAction.getId()));
+            if (deleted == 0) return;
+            LifecycleAction action = LifecycleAction.fromString(scheduledAction.getAction());
+            if (action == null) {
+                System.err.println("Invalid action specified: " + scheduledAction.getAction());
+                return;
+            }
+            machineService.runScheduledAction(scheduledAction.getMachineId(), action);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
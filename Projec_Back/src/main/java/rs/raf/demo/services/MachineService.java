@@ -1,32 +1,45 @@
 package rs.raf.demo.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.jpa.repository.Lock;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import rs.raf.demo.model.ErrorMessage;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.MachineState;
 import rs.raf.demo.model.User;
+import rs.raf.demo.model.enums.LifecycleAction;
 import rs.raf.demo.model.enums.Status;
 import rs.raf.demo.repositories.ErrorMessageRepository;
 import rs.raf.demo.repositories.MachineRepository;
+import rs.raf.demo.repositories.MachineSpecifications;
 import rs.raf.demo.repositories.UserRepository;
+import rs.raf.demo.responses.BulkActionResult;
+import rs.raf.demo.responses.ErrorMessageResponse;
+import rs.raf.demo.responses.FleetSummary;
+import rs.raf.demo.responses.MachineResponse;
 
-import javax.persistence.LockModeType;
-import java.lang.reflect.Array;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class MachineService {
@@ -34,14 +47,40 @@ public class MachineService {
     private MachineRepository machineRepository;
     private UserRepository userRepository;
     private ErrorMessageRepository errorMessageRepository;
-    private ScheduledExecutorService executorService = Executors.newScheduledThreadPool(10);
+    private TransactionTemplate transactionTemplate;
+    private MachineCommandDispatcher commandDispatcher;
+    private MachineStatusNotificationService notificationService;
+    private LifecycleMetrics metrics;
+    private LifecycleExecutor lifecycleExecutor;
+    private MachineStateCache stateCache;
+    private ErrorMessageWriter errorWriter;
+    private FleetStatusCounters fleetCounters;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final List<Consumer<Long>> destroyListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean accepting = true;
 
 
     @Autowired
-    public MachineService(MachineRepository machineRepository, UserRepository userRepository, ErrorMessageRepository errorMessageRepository) {
+    public MachineService(MachineRepository machineRepository, UserRepository userRepository, ErrorMessageRepository errorMessageRepository, PlatformTransactionManager transactionManager, MachineCommandDispatcher commandDispatcher, MachineStatusNotificationService notificationService, LifecycleMetrics metrics, LifecycleExecutor lifecycleExecutor, MachineStateCache stateCache, ErrorMessageWriter errorWriter, FleetStatusCounters fleetCounters) {
         this.machineRepository = machineRepository;
         this.userRepository = userRepository;
         this.errorMessageRepository = errorMessageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.commandDispatcher = commandDispatcher;
+        this.notificationService = notificationService;
+        this.metrics = metrics;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.stateCache = stateCache;
+        this.errorWriter = errorWriter;
+        this.fleetCounters = fleetCounters;
 
     }
 
@@ -53,206 +92,501 @@ public class MachineService {
     }
 
 
-    @Transactional
-    public Collection<Machine> getMachinesByUser(String userMail) {
-        return machineRepository.findAllByCreatedBy(userRepository.findByMail(userMail));
+    @Transactional(readOnly = true)
+    public List<MachineResponse> getMachinesByUser(String userMail) {
+        return machineRepository.findResponsesByOwnerMail(userMail);
     }
 
 
-    @Transactional
-    public Collection<Machine> searchMachines(String name, List<String> statuses, LocalDate dateFrom, LocalDate dateTo, String userMail) {
-        List<Machine> allMachinesByUser = new ArrayList<>(getMachinesByUser(userMail));
-        List<Machine> filteredMachines = new ArrayList<>();
-
-        for (Machine machine : allMachinesByUser) {
-            if ((name == null || machine.getName().toLowerCase().contains(name.toLowerCase()))
-                    && (statuses == null || statuses.contains(machine.getStatus().toString()))
-                    && (dateFrom == null || dateTo == null || (machine.getCreationDate().isAfter(dateFrom) && machine.getCreationDate().isBefore(dateTo)))) {
-                filteredMachines.add(machine);
-            }
+    /**
+     * Hands the owner's machines to the consumer one by one from a forward-only cursor. The
+     * rows are read straight into {@link MachineResponse}s, so nothing accumulates in the
+     * persistence context no matter how large the inventory is.
+     */
+    @Transactional(readOnly = true)
+    public void streamMachinesByUser(String userMail, Consumer<MachineResponse> consumer) {
+        try (Stream<MachineResponse> machines = machineRepository.streamResponsesByOwnerMail(userMail)) {
+            machines.forEach(consumer);
         }
+    }
+
+
+    @Transactional(readOnly = true)
+    public Page<MachineResponse> searchMachines(String name, List<String> statuses, LocalDate dateFrom, LocalDate dateTo, String userMail, Pageable pageable) {
+        User owner = userRepository.findByMail(userMail);
+        if (owner == null) return Page.empty(pageable);
+        return machineRepository.findAll(MachineSpecifications.search(owner, name, statuses, dateFrom, dateTo), pageable)
+                .map(MachineResponse::of);
+    }
+
 
-        return filteredMachines;
+    /**
+     * Unpaged search, for clients that do not send paging parameters.
+     */
+    @Transactional(readOnly = true)
+    public List<MachineResponse> searchMachines(String name, List<String> statuses, LocalDate dateFrom, LocalDate dateTo, String userMail, Sort sort) {
+        User owner = userRepository.findByMail(userMail);
+        if (owner == null) return Collections.emptyList();
+        return machineRepository.findAll(MachineSpecifications.search(owner, name, statuses, dateFrom, dateTo), sort).stream()
+                .map(MachineResponse::of)
+                .collect(Collectors.toList());
     }
 
 
+    @Transactional
     public Machine createMachine(String name, String userMail) {
         System.err.println("creating machine");
-        return machineRepository.save(new Machine(0L, Status.STOPPED, userRepository.findByMail(userMail), true, name, LocalDate.now()/*, 0*/));
+        Machine machine = machineRepository.save(new Machine(null, Status.STOPPED, userRepository.findByMail(userMail), true, name, LocalDate.now()/*, 0*/));
+        machineChanged(machine);
+        fleetCounters.created(ownerMail(machine), Status.STOPPED, 1);
+        return machine;
     }
 
+
+    /**
+     * Creates one machine per name in a single transaction. Ids come from the pooled-lo
+     * sequence and the inserts are flushed as JDBC batches of {@code batchSize}, clearing the
+     * persistence context after each batch.
+     */
     @Transactional
-    public Collection<ErrorMessage> findAllErrorsForMachine(Long id){
-        return errorMessageRepository.findAllByMachineId(id);
+    public List<Long> createMachines(List<String> names, String userMail) {
+        User owner = userRepository.findByMail(userMail);
+        List<Long> ids = new ArrayList<>(names.size());
+        List<Machine> batch = new ArrayList<>(batchSize);
+        for (String name : names) {
+            Machine machine = new Machine(null, Status.STOPPED, owner, true, name, LocalDate.now());
+            entityManager.persist(machine);
+            ids.add(machine.getId());
+            batch.add(machine);
+            if (batch.size() == batchSize) {
+                flushBatch(batch);
+            }
+        }
+        flushBatch(batch);
+        fleetCounters.created(userMail, Status.STOPPED, names.size());
+        System.err.println("created " + ids.size() + " machines");
+        return ids;
     }
 
 
-    @Transactional
-    public void destroyMachine(Long id) {
-        System.err.println("destroying machine");
-        Optional<Machine> optionalMachine = this.findById(id);
-        if (optionalMachine.isPresent()) {
-            Machine machine = optionalMachine.get();
-            if (machine.getStatus() != Status.STOPPED) return;
-            machine.setActive(false);
-            machineRepository.save(machine);
+    private void flushBatch(List<Machine> batch) {
+        entityManager.flush();
+        entityManager.clear();
+        batch.forEach(this::machineChanged);
+        batch.clear();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ErrorMessageResponse> getErrorsForMachine(Long id, LocalDate beforeDate, Long beforeId, int size) {
+        if (beforeDate == null || beforeId == null) {
+            return errorMessageRepository.findFirstPageByMachineId(id, PageRequest.of(0, size));
         }
+        return errorMessageRepository.findPageByMachineIdBefore(id, beforeDate, beforeId, PageRequest.of(0, size));
     }
 
 
-    @Transactional
-    public void startMachine(Long id, boolean scheduled) {
-        executorService.schedule(() -> {
+    /**
+     * Hands every error of the machine to the consumer while reading them with a forward-only
+     * cursor, so the history is never held in memory as a whole.
+     */
+    @Transactional(readOnly = true)
+    public void streamErrorsForMachine(Long id, Consumer<ErrorMessageResponse> consumer) {
+        try (Stream<ErrorMessageResponse> errors = errorMessageRepository.streamByMachineId(id)) {
+            errors.forEach(consumer);
+        }
+    }
+
+
+    public void destroyMachine(Long id) {
+        System.err.println("destroying machine");
+        commandDispatcher.submit(id, () -> transactionTemplate.execute(transactionStatus -> {
             Optional<Machine> optionalMachine = machineRepository.findById(id);
             if (optionalMachine.isPresent()) {
                 Machine machine = optionalMachine.get();
-                if (machine.isActive()) {
-                    if (machine.getStatus() == Status.STOPPED) {
-                        System.err.println("Starting machine");
-                        machine.setStatus(Status.RUNNING);
-                        machineRepository.save(machine);
-                        System.err.println("Machine started");
-                    } else if (scheduled) {
-                        errorMessageRepository.save(new ErrorMessage(0L, "The machine's status is not 'STOPPED'.", "START", LocalDate.now(), machine));
-                    }
-                } else if (scheduled) {
-                    errorMessageRepository.save(new ErrorMessage(0L, "The machine is deactivated.", "START", LocalDate.now(), machine));
-                }
+                if (machine.getStatus() != Status.STOPPED) return null;
+                machine.setActive(false);
+                notificationService.notifyMachineStatusChange(machineRepository.save(machine));
+                afterCommit(() -> stateCache.evict(id));
+                fleetCounters.deactivated(ownerMail(machine), Status.STOPPED);
+                destroyListeners.forEach(listener -> listener.accept(id));
             }
-        }, (long) (Math.random() * (15000 - 10000) + 10000), TimeUnit.MILLISECONDS);
+            return null;
+        })).join();
     }
 
 
+    /**
+     * Registers a callback that gets the id of every destroyed machine. It runs on the machine's
+     * dispatcher stripe inside the transaction that destroys it, so what it deletes goes away
+     * together with the machine.
+     */
+    public void addDestroyListener(Consumer<Long> listener) {
+        destroyListeners.add(listener);
+    }
+
+
+    public void startMachine(Long id, boolean scheduled) {
+        requestTransition(id, LifecycleAction.START, scheduled);
+    }
+
 
-    @Transactional
     public void stopMachine(Long id, boolean scheduled) {
-        executorService.schedule(() -> {
+        requestTransition(id, LifecycleAction.STOP, scheduled);
+    }
+
+
+    public void restartMachine(Long id, boolean scheduled) {
+        requestTransition(id, LifecycleAction.RESTART, scheduled);
+    }
+
+
+    /**
+     * Moves the machine into the action's transitional status right away and schedules the
+     * rest of the transition as a continuation, so no pool thread waits while it is in flight.
+     * Both steps run on the machine's dispatcher stripe.
+     */
+    private void requestTransition(Long id, LifecycleAction action, boolean scheduled) {
+        queued.incrementAndGet();
+        if (!accepting) {
+            queued.decrementAndGet();
+            System.err.println("Shutting down, " + action + " of machine " + id + " rejected");
+            return;
+        }
+        long requestedAt = System.nanoTime();
+        try {
+            commandDispatcher.execute(id, () -> {
+                try {
+                    acceptTransition(id, action, scheduled, requestedAt);
+                } finally {
+                    queued.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+
+    private void acceptTransition(Long id, LifecycleAction action, boolean scheduled, long requestedAt) {
+        Boolean accepted = transactionTemplate.execute(transactionStatus -> {
             Optional<Machine> optionalMachine = machineRepository.findById(id);
-            if (optionalMachine.isPresent()) {
-                Machine machine = optionalMachine.get();
-                if (machine.isActive()) {
-                    if (machine.getStatus() == Status.RUNNING) {
-                        System.err.println("Stopping machine");
-                        machine.setStatus(Status.STOPPED);
-                        machineRepository.save(machine);
-                        System.err.println("Machine stopped");
-                    } else if (scheduled) {
-                        errorMessageRepository.save(new ErrorMessage(0L, "The machine's status is not 'RUNNING'.", "STOP", LocalDate.now(), machine));
-                    }
-                } else if (scheduled) {
-                    errorMessageRepository.save(new ErrorMessage(0L, "The machine is deactivated.", "STOP", LocalDate.now(), machine));
+            if (!optionalMachine.isPresent()) return false;
+
+            Machine machine = optionalMachine.get();
+            if (!machine.isActive()) {
+                if (scheduled) {
+                    recordError(id, action.name(), "The machine is deactivated.");
                 }
+                return false;
             }
-        }, (long) (Math.random() * (15000 - 10000) + 10000), TimeUnit.MILLISECONDS);
+            if (machine.getStatus() != action.getRequiredStatus()) {
+                if (scheduled) {
+                    recordError(id, action.name(), "The machine's status is not '" + action.getRequiredStatus() + "'.");
+                }
+                return false;
+            }
+
+            System.err.println("Machine " + id + " " + action.getTransitionalStatus());
+            machine.setStatus(action.getTransitionalStatus());
+            machineChanged(machineRepository.save(machine));
+            countMoved(Collections.singletonList(machine), action.getRequiredStatus(), action.getTransitionalStatus());
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(accepted)) {
+            inFlight.incrementAndGet();
+            lifecycleExecutor.schedule(() -> completeTransition(Collections.singletonList(id), action, requestedAt),
+                    (long) (Math.random() * (15000 - 10000) + 10000), TimeUnit.MILLISECONDS);
+        }
     }
 
 
+    /**
+     * First continuation of a transition. A restart has stopped the machine at this point and
+     * brings it back up in a second continuation after another 5-10 seconds.
+     */
+    private void completeTransition(List<Long> ids, LifecycleAction action, long requestedAt) {
+        if (action == LifecycleAction.RESTART) {
+            System.err.println("Machines " + ids + " stopped, restarting");
+            lifecycleExecutor.schedule(() -> finishTransition(ids, action, requestedAt),
+                    (long) (Math.random() * (10000 - 5000) + 5000), TimeUnit.MILLISECONDS);
+        } else {
+            finishTransition(ids, action, requestedAt);
+        }
+    }
 
 
+    private void finishTransition(List<Long> ids, LifecycleAction action, long requestedAt) {
+        commandDispatcher.partition(ids).forEach((stripe, stripeIds) -> commandDispatcher.submitToStripe(stripe, () -> {
+            try {
+                transactionTemplate.execute(transactionStatus -> {
+                    List<Machine> machines = machineRepository.findAllByIdIn(stripeIds).stream()
+                            .filter(machine -> machine.getStatus() == action.getTransitionalStatus())
+                            .collect(Collectors.toList());
+                    machines.forEach(machine -> machine.setStatus(action.getTargetStatus()));
+                    machineRepository.saveAll(machines).forEach(this::machineChanged);
+                    countMoved(machines, action.getTransitionalStatus(), action.getTargetStatus());
+                    metrics.recordTransition(action, requestedAt, machines.size());
+                    return null;
+                });
+            } finally {
+                inFlight.addAndGet(-stripeIds.size());
+            }
+            System.err.println("Machines " + stripeIds + " " + action.getTargetStatus());
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) transitionFailed(stripeIds, action, error);
+        }));
+    }
 
-    @Transactional
-    public void restartMachine(Long id, boolean scheduled) {
-        executorService.schedule(() -> {
-            Optional<Machine> optionalMachine = machineRepository.findById(id);
-            if (optionalMachine.isPresent()) {
-                Machine machine = optionalMachine.get();
-                if (machine.isActive()) {
-                    if (machine.getStatus() == Status.RUNNING) {
-                        System.err.println("Restarting machine");
-                        machine.setStatus(Status.STOPPED);
-                        machineRepository.save(machine);
-
-                        try {
-                            Thread.sleep((long) (Math.random() * (10000 - 5000) + 5000));
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-
-                        machine.setStatus(Status.RUNNING);
-                        machineRepository.save(machine);
-
-                        System.err.println("Machine restarted");
-                    } else if (scheduled) {
-                        errorMessageRepository.save(new ErrorMessage(0L, "The machine's status is not 'RUNNING'.", "RESTART", LocalDate.now(), machine));
-                    }
-                } else if (scheduled) {
-                    errorMessageRepository.save(new ErrorMessage(0L, "The machine is deactivated.", "RESTART", LocalDate.now(), machine));
+
+    /**
+     * The machines stay in the transitional status until the next startup resumes them, so
+     * the failure is recorded against each of them.
+     */
+    private void transitionFailed(List<Long> ids, LifecycleAction action, Throwable error) {
+        System.err.println("Completing " + action + " of machines " + ids + " failed");
+        error.printStackTrace();
+        for (Long id : ids) {
+            recordError(id, action.name(), "The transition could not be completed: " + error.getMessage());
+        }
+    }
+
+
+    /**
+     * Validates and accepts the machines with one query per dispatcher stripe (instead of one
+     * locking query per machine) and completes them all in one continuation.
+     */
+    public List<BulkActionResult> bulkAction(LifecycleAction action, List<Long> ids) {
+        queued.incrementAndGet();
+        try {
+            if (!accepting) {
+                return new LinkedHashSet<>(ids).stream()
+                        .map(id -> new BulkActionResult(id, false, "The service is shutting down."))
+                        .collect(Collectors.toList());
+            }
+            return acceptBulkAction(action, ids);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+
+    private List<BulkActionResult> acceptBulkAction(LifecycleAction action, List<Long> ids) {
+        long requestedAt = System.nanoTime();
+        List<CompletableFuture<List<BulkActionResult>>> stripeResults = new ArrayList<>();
+        commandDispatcher.partition(new LinkedHashSet<>(ids)).forEach((stripe, stripeIds) ->
+                stripeResults.add(commandDispatcher.submitToStripe(stripe, () -> acceptBulkTransition(action, stripeIds))));
+
+        Map<Long, BulkActionResult> resultsById = new HashMap<>();
+        for (CompletableFuture<List<BulkActionResult>> stripeResult : stripeResults) {
+            try {
+                stripeResult.join().forEach(result -> resultsById.put(result.getId(), result));
+            } catch (CompletionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+
+        List<BulkActionResult> results = new ArrayList<>();
+        List<Long> acceptedIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            BulkActionResult result = resultsById.getOrDefault(id, new BulkActionResult(id, false, "The action could not be accepted."));
+            if (result.isAccepted()) acceptedIds.add(id);
+            results.add(result);
+        }
+
+        if (!acceptedIds.isEmpty()) {
+            inFlight.addAndGet(acceptedIds.size());
+            lifecycleExecutor.schedule(() -> completeTransition(acceptedIds, action, requestedAt),
+                    (long) (Math.random() * (15000 - 10000) + 10000), TimeUnit.MILLISECONDS);
+        }
+        return results;
+    }
+
+
+    private List<BulkActionResult> acceptBulkTransition(LifecycleAction action, List<Long> ids) {
+        return transactionTemplate.execute(transactionStatus -> {
+            Map<Long, Machine> machinesById = new HashMap<>();
+            for (Machine machine : machineRepository.findAllByIdIn(ids)) {
+                machinesById.put(machine.getId(), machine);
+            }
+
+            List<BulkActionResult> results = new ArrayList<>();
+            List<Machine> accepted = new ArrayList<>();
+            for (Long id : ids) {
+                Machine machine = machinesById.get(id);
+                if (machine == null) {
+                    results.add(new BulkActionResult(id, false, "The machine does not exist."));
+                } else if (!machine.isActive()) {
+                    results.add(new BulkActionResult(id, false, "The machine is deactivated."));
+                } else if (machine.getStatus() != action.getRequiredStatus()) {
+                    results.add(new BulkActionResult(id, false, "The machine's status is not '" + action.getRequiredStatus() + "'."));
+                } else {
+                    machine.setStatus(action.getTransitionalStatus());
+                    accepted.add(machine);
+                    results.add(new BulkActionResult(id, true, null));
                 }
             }
-        }, (long) (Math.random() * (15000 - 10000) + 10000), TimeUnit.MILLISECONDS);
+            machineRepository.saveAll(accepted).forEach(this::machineChanged);
+            countMoved(accepted, action.getRequiredStatus(), action.getTransitionalStatus());
+            return results;
+        });
     }
 
 
-    private void logError(Long machineId, String action, String errorMessage) {
-        ErrorMessage error = new ErrorMessage();
-        error.setMachine(machineRepository.findById(machineId).orElse(null));
-        error.setAction(action);
-        error.setMessage(errorMessage);
-        errorMessageRepository.save(error);
+    /**
+     * Write-through for every saved machine: refreshes its cached state and queues the status
+     * event for its owner, both once the surrounding transaction commits.
+     */
+    private void machineChanged(Machine machine) {
+        MachineState state = MachineState.of(machine);
+        afterCommit(() -> stateCache.update(state));
+        notificationService.notifyMachineStatusChange(machine);
+    }
+
+
+    /**
+     * Machines left in a transitional status were in flight when the previous instance
+     * stopped. The status is the checkpoint: their transitions are completed right away.
+     * Nothing on the row says which instance owns a transition, so this assumes one instance
+     * runs lifecycle operations against the database at a time; during a rolling deploy the
+     * old instance must be stopped (and drained) before the new one starts.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeTransitions() {
+        for (LifecycleAction action : LifecycleAction.values()) {
+            List<Long> ids = machineRepository.findIdsByActiveTrueAndStatus(action.getTransitionalStatus());
+            if (ids.isEmpty()) continue;
+
+            System.err.println("Resuming " + action + " of machines " + ids);
+            inFlight.addAndGet(ids.size());
+            lifecycleExecutor.execute(() -> completeTransition(ids, action, System.nanoTime()));
+        }
     }
 
-    @Transactional
-    public void scheduleMachine(Long id, String date, String time, String action) throws ParseException {
-        Date scheduledTime = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(date + " " + time);
-        System.err.println("Machine scheduled for " + scheduledTime);
-        Machine machine = machineRepository.findById(id).orElse(null);
-        System.out.println("MASINA: " + machine.getId() + " STATUS: " + machine.getStatus() + "ACTION: " + action);
-
-        long delay = scheduledTime.getTime() - System.currentTimeMillis();
-        System.out.println("DELAY: " + delay);
-        if (delay > 0) {
-            executorService.schedule(() -> {
-                try {
-                    System.out.println("da li je usao u ovaj try");
-
-                    System.out.println("da li je usao u ovaj switch");
-
-                    switch (action) {
-                        case "Start":
-                            if (machine.getStatus() == Status.STOPPED) {
-                                startMachine(id, true);
-                            } else {
-                                System.out.println("ACTION:  " + action);
-                                logError(id, action, "Machine is already running.");
-                            }
-                            break;
-                        case "Stop":
-                            if (machine.getStatus() == Status.RUNNING) {
-                                stopMachine(id, true);
-                            } else {
-                                System.out.println("ACTION:  " + action);
-                                logError(id, action, "Machine is not running.");
-                            }
-                            break;
-                        case "Restart":
-                            if (machine.getStatus() == Status.RUNNING) {
-                                restartMachine(id, true);
-                            } else {
-                                logError(id, action, "Machine is not running.");
-                            }
-                            break;
-                        default:
-                            System.err.println("Invalid action specified.");
-                    }
 
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    String errorMsg = "Error occurred during scheduled operation: " + e.getMessage();
+    /**
+     * Rejects new lifecycle operations from now on.
+     */
+    public void stopAccepting() {
+        accepting = false;
+    }
 
 
-                }
-            }, delay, TimeUnit.MILLISECONDS);
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+
+    /**
+     * Waits until every queued command has been accepted or rejected and every accepted
+     * transition has saved its target status, for at most the given time. Returns the number
+     * of operations still pending: queued commands and machines in flight.
+     */
+    public int awaitInFlight(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
         }
+        return pending();
     }
 
 
-    public Status getMachineStatus(Long machineId) {
-        Machine machine = machineRepository.findById(machineId).orElse(null);
+    private int pending() {
+        return queued.get() + inFlight.get();
+    }
 
-        if (machine != null) {
-            return machine.getStatus();
-        } else {
-            return null;
+
+    /**
+     * Moves the machines between status counters once the surrounding transaction commits.
+     */
+    private void countMoved(List<Machine> machines, Status from, Status to) {
+        fleetCounters.moved(machines.stream().map(this::ownerMail).collect(Collectors.toList()), from, to);
+    }
+
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+
+    private String ownerMail(Machine machine) {
+        return machine.getCreatedBy() != null ? machine.getCreatedBy().getMail() : null;
+    }
+
+
+    public FleetSummary getFleetSummary(String userMail) {
+        return fleetCounters.summaryOf(userMail);
+    }
+
+
+    /**
+     * Hands the error to the {@link ErrorMessageWriter}, which inserts it in the background.
+     */
+    private void recordError(Long machineId, String action, String errorMessage) {
+        errorWriter.record(machineId, action, errorMessage);
+        metrics.recordError(action);
+    }
+
+    /**
+     * Runs an action fired by {@link MachineSchedulerService} or {@link RecurringScheduleService}.
+     * The machine is re-read here because its status may have changed since the action was
+     * scheduled.
+     */
+    public void runScheduledAction(Long id, LifecycleAction action) {
+        lifecycleExecutor.execute(() -> {
+            Status status = getMachineStatus(id);
+            if (status == null) return;
+
+            switch (action) {
+                case START:
+                    if (status == Status.STOPPED) {
+                        startMachine(id, true);
+                    } else {
+                        recordError(id, action.name(), "Machine is already running.");
+                    }
+                    break;
+                case STOP:
+                    if (status == Status.RUNNING) {
+                        stopMachine(id, true);
+                    } else {
+                        recordError(id, action.name(), "Machine is not running.");
+                    }
+                    break;
+                case RESTART:
+                    if (status == Status.RUNNING) {
+                        restartMachine(id, true);
+                    } else {
+                        recordError(id, action.name(), "Machine is not running.");
+                    }
+                    break;
+            }
+        });
+    }
+
+
+    public Optional<MachineState> getMachineState(Long machineId) {
+        MachineState state = stateCache.get(machineId);
+        if (state != null) return Optional.of(state);
+
+        long stamp = stateCache.stamp(machineId);
+        Optional<Machine> machine = machineRepository.findById(machineId);
+        machine.ifPresent(found -> stateCache.load(found, stamp));
+        return machine.map(MachineState::of);
+    }
+
+
+    public Status getMachineStatus(Long machineId) {
+        return getMachineState(machineId).map(MachineState::getStatus).orElse(null);
     }
 }
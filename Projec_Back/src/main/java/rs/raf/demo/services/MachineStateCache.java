@@ -0,0 +1,111 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.model.MachineState;
+import rs.raf.demo.utils.BoundedCache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of machine state (status, active flag, owner). {@link MachineService}
+ * fills it on reads and overwrites it once the transaction that saves a machine commits, so
+ * entries never have to expire and a rolled back transition never reaches the cache.
+ * Disabled with {@code machines.state-cache.enabled=false}.
+ * <p>
+ * Every update or eviction bumps a write counter for the machine's slot. A reader takes the
+ * counter before it goes to the database and its result is only kept if no write happened
+ * in between, so a state read before {@code destroyMachine} cannot be cached after it.
+ */
+@Component
+public class MachineStateCache implements MeterBinder {
+
+    private static final int SLOTS = 64;
+
+    private final boolean enabled;
+    private final BoundedCache<Long, MachineState> states;
+    private final AtomicLongArray writes = new AtomicLongArray(SLOTS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+
+    public MachineStateCache(@Value("${machines.state-cache.enabled:true}") boolean enabled, @Value("${machines.state-cache.max-size:10000}") int maxSize) {
+        this.enabled = enabled;
+        this.states = new BoundedCache<>(maxSize);
+    }
+
+
+    public MachineState get(Long machineId) {
+        if (!enabled) return null;
+
+        MachineState state = states.get(machineId);
+        if (state != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return state;
+    }
+
+
+    /**
+     * Taken before reading the machine from the database and handed back to {@link #load}.
+     */
+    public long stamp(Long machineId) {
+        return writes.get(slotOf(machineId));
+    }
+
+
+    /**
+     * Caches state that was just read from the database. An entry written in the meantime by
+     * a transition is newer, so it is kept; if the machine was written or evicted since the
+     * stamp was taken, the read may be stale and is dropped again.
+     */
+    public void load(Machine machine, long stamp) {
+        if (!enabled) return;
+
+        MachineState state = MachineState.of(machine);
+        if (states.putIfAbsent(machine.getId(), state) == null && writes.get(slotOf(machine.getId())) != stamp) {
+            states.remove(machine.getId(), state);
+        }
+    }
+
+
+    public void update(MachineState state) {
+        if (!enabled) return;
+
+        writes.incrementAndGet(slotOf(state.getId()));
+        states.put(state.getId(), state);
+    }
+
+
+    public void evict(Long machineId) {
+        writes.incrementAndGet(slotOf(machineId));
+        states.remove(machineId);
+    }
+
+
+    private static int slotOf(Long machineId) {
+        int hash = machineId.hashCode();
+        return (hash ^ (hash >>> 16)) & (SLOTS - 1);
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("machines.state.cache.gets", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("machines.state.cache.gets", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("machines.state.cache.size", states, BoundedCache::size)
+                .register(registry);
+    }
+}
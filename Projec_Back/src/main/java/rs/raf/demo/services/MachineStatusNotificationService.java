@@ -2,9 +2,23 @@ package rs.raf.demo.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import rs.raf.demo.model.enums.Status;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rs.raf.demo.model.Machine;
+import rs.raf.demo.responses.MachineStatusEvent;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects machine status changes per owner and publishes them once per window as a single
+ * frame on {@code /topic/machine-status/{ownerMail}}. Several changes of the same machine
+ * within a window collapse into the latest one.
+ */
 @Service
 public class MachineStatusNotificationService {
 
@@ -12,11 +26,45 @@ public class MachineStatusNotificationService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
-    public void notifyMachineStatusChange(Long machineId, Status newStatus) {
-        String topic = "/topic/machine-status/" + machineId;
-        messagingTemplate.convertAndSend(topic, newStatus.toString()); // Šaljete promenjeno stanje mašine na određenu temu
+    private final Map<String, Map<Long, MachineStatusEvent>> pendingEvents = new ConcurrentHashMap<>();
+
+    /**
+     * Queues the event once the surrounding transaction commits, so a rolled back change is
+     * never published. Machines without an owner have no topic and are skipped.
+     */
+    public void notifyMachineStatusChange(Machine machine) {
+        if (machine.getCreatedBy() == null) return;
+
+        String ownerMail = machine.getCreatedBy().getMail();
+        MachineStatusEvent event = new MachineStatusEvent(machine.getId(), machine.getStatus(), machine.isActive());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            queue(ownerMail, event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                queue(ownerMail, event);
+            }
+        });
     }
 
+    private void queue(String ownerMail, MachineStatusEvent event) {
+        pendingEvents.compute(ownerMail, (owner, events) -> {
+            if (events == null) events = new LinkedHashMap<>();
+            events.put(event.getId(), event);
+            return events;
+        });
+    }
 
+    @Scheduled(fixedDelayString = "${machines.status-events.window-ms:250}")
+    public void flush() {
+        for (String owner : pendingEvents.keySet()) {
+            Map<Long, MachineStatusEvent> events = pendingEvents.remove(owner);
+            if (events != null) {
+                messagingTemplate.convertAndSend("/topic/machine-status/" + owner, new ArrayList<>(events.values()));
+            }
+        }
+    }
 
 }
@@ -0,0 +1,325 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import rs.raf.demo.model.MachineState;
+import rs.raf.demo.model.RecurringSchedule;
+import rs.raf.demo.model.ScheduledAction;
+import rs.raf.demo.model.enums.LifecycleAction;
+import rs.raf.demo.repositories.RecurringScheduleRepository;
+import rs.raf.demo.repositories.ScheduledActionRepository;
+import rs.raf.demo.responses.ScheduleResponse;
+import rs.raf.demo.responses.ScheduleResult;
+import rs.raf.demo.utils.HierarchicalTimingWheel;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Recurring machine actions defined by a cron expression. The schedules are persisted and
+ * only their next firing is kept in memory, on a {@link HierarchicalTimingWheel} ticking every
+ * {@code machines.recurring.tick-ms}. After a firing the next one is computed from the
+ * expression and put back on the wheel.
+ * <p>
+ * A machine can have one schedule per cron expression: the same action is coalesced into the
+ * existing schedule, a different one is rejected. A different action is also rejected when
+ * the expression fires at the same second as another schedule of the machine within the next
+ * year, or at the time of one of its pending one-shot actions. The checks and the insert run
+ * as one command on the machine's {@link MachineCommandDispatcher} stripe, like one-shot
+ * scheduling and {@code destroyMachine}, so requests for the same machine never interleave.
+ * They only read the machine's own rows through the machine id index, and a machine has at
+ * most {@code machines.recurring.max-per-machine} schedules, which bounds the overlap checks.
+ * <p>
+ * Destroying a machine deletes its schedules in the same transaction and takes them off the
+ * wheel once it commits. A schedule that still fires for a destroyed machine, such as one
+ * left over from before this cleanup, removes itself instead of running.
+ */
+@Service
+public class RecurringScheduleService {
+
+    private static class ArmedSchedule {
+        private final RecurringSchedule schedule;
+        private final CronExpression cron;
+        private volatile HierarchicalTimingWheel.Timeout timeout;
+
+        private ArmedSchedule(RecurringSchedule schedule, CronExpression cron) {
+            this.schedule = schedule;
+            this.cron = cron;
+        }
+    }
+
+    private static final int OVERLAP_STEPS = 10000;
+
+    private final RecurringScheduleRepository recurringScheduleRepository;
+    private final ScheduledActionRepository scheduledActionRepository;
+    private final MachineService machineService;
+    private final MachineCommandDispatcher commandDispatcher;
+    private final LifecycleMetrics metrics;
+    private final HierarchicalTimingWheel wheel;
+    private final Map<Long, ArmedSchedule> armed = new ConcurrentHashMap<>();
+
+    @Value("${machines.scheduler.batch-size:500}")
+    private int batchSize;
+
+    @Value("${machines.recurring.max-per-machine:20}")
+    private int maxPerMachine;
+
+
+    @Autowired
+    public RecurringScheduleService(RecurringScheduleRepository recurringScheduleRepository, ScheduledActionRepository scheduledActionRepository, MachineService machineService, MachineCommandDispatcher commandDispatcher,
+                                    LifecycleMetrics metrics, LifecycleExecutor lifecycleExecutor, MeterRegistry registry, @Value("${machines.recurring.tick-ms:100}") long tickMillis) {
+        this.recurringScheduleRepository = recurringScheduleRepository;
+        this.scheduledActionRepository = scheduledActionRepository;
+        this.machineService = machineService;
+        this.commandDispatcher = commandDispatcher;
+        this.metrics = metrics;
+        this.wheel = new HierarchicalTimingWheel(tickMillis, lifecycleExecutor::execute);
+        this.wheel.start();
+        machineService.addDestroyListener(this::removeSchedules);
+
+        Gauge.builder("machines.recurring.scheduled", wheel, HierarchicalTimingWheel::size)
+                .description("Recurring schedules waiting on the timing wheel")
+                .register(registry);
+    }
+
+
+    /**
+     * Returns null if the machine does not exist or was destroyed, or the action or the cron expression is invalid.
+     */
+    public ScheduleResult scheduleRecurring(Long id, String cron, String action) {
+        LifecycleAction lifecycleAction = LifecycleAction.fromString(action);
+        if (id == null || lifecycleAction == null || cron == null || !CronExpression.isValidExpression(cron)) return null;
+        if (!machineService.getMachineState(id).isPresent()) return null;
+
+        return commandDispatcher.submit(id, () -> addSchedule(id, cron.trim(), lifecycleAction)).join();
+    }
+
+
+    private ScheduleResult addSchedule(Long id, String cron, LifecycleAction action) {
+        if (!isActive(id)) return null;
+
+        List<RecurringSchedule> schedules = recurringScheduleRepository.findByMachineIdInOrderById(Collections.singletonList(id));
+        for (RecurringSchedule existing : schedules) {
+            if (!existing.getCron().equals(cron)) continue;
+            if (LifecycleAction.fromString(existing.getAction()) == action) {
+                return new ScheduleResult(existing.getId(), true, "The action is already scheduled.");
+            }
+            return new ScheduleResult(existing.getId(), false, "'" + existing.getAction() + "' is already scheduled at '" + existing.getCron() + "'.");
+        }
+        if (schedules.size() >= maxPerMachine) {
+            return new ScheduleResult(null, false, "The machine already has " + maxPerMachine + " recurring schedules.");
+        }
+
+        ScheduleResult conflict = findConflict(id, schedules, CronExpression.parse(cron), action);
+        if (conflict != null) return conflict;
+
+        RecurringSchedule schedule = recurringScheduleRepository.save(new RecurringSchedule(null, id, action.name(), cron));
+        arm(schedule, ZonedDateTime.now());
+        System.err.println("Machine " + id + " scheduled to " + action + " at '" + cron + "'");
+        return new ScheduleResult(schedule.getId(), true, null);
+    }
+
+
+    /**
+     * A rejection if another schedule or a pending one-shot action of the machine runs a
+     * different action at a time the expression fires, or null.
+     */
+    private ScheduleResult findConflict(Long machineId, List<RecurringSchedule> schedules, CronExpression expression, LifecycleAction action) {
+        ZonedDateTime now = ZonedDateTime.now();
+        for (RecurringSchedule other : schedules) {
+            if (LifecycleAction.fromString(other.getAction()) != action && overlap(expression, CronExpression.parse(other.getCron()), now)) {
+                return new ScheduleResult(other.getId(), false, "'" + other.getAction() + "' is scheduled at '" + other.getCron() + "', which fires at the same time.");
+            }
+        }
+        for (ScheduledAction oneShot : scheduledActionRepository.findByMachineIdInOrderByMachineIdAscFireTimeAsc(Collections.singletonList(machineId))) {
+            if (LifecycleAction.fromString(oneShot.getAction()) != action && firesAt(expression, oneShot.getFireTime())) {
+                return new ScheduleResult(oneShot.getId(), false, "'" + oneShot.getAction() + "' is scheduled for " + oneShot.getFireTime() + ".");
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * The machine's recurring schedule that runs a different action at the given second, if
+     * there is one. Called from the machine's dispatcher stripe.
+     */
+    public Optional<RecurringSchedule> findConflict(Long machineId, LocalDateTime fireTime, LifecycleAction action) {
+        return recurringScheduleRepository.findByMachineIdInOrderById(Collections.singletonList(machineId)).stream()
+                .filter(schedule -> LifecycleAction.fromString(schedule.getAction()) != action)
+                .filter(schedule -> firesAt(CronExpression.parse(schedule.getCron()), fireTime))
+                .findFirst();
+    }
+
+
+    private static boolean firesAt(CronExpression expression, LocalDateTime time) {
+        ZonedDateTime zoned = time.atZone(ZoneId.systemDefault());
+        return zoned.equals(expression.next(zoned.minusSeconds(1)));
+    }
+
+
+    /**
+     * Whether the expressions fire at the same second within the next year. Each step jumps
+     * the earlier of the two next firings to the first firing of its expression at or after
+     * the other one, so they meet quickly if they meet at all.
+     */
+    static boolean overlap(CronExpression first, CronExpression second, ZonedDateTime from) {
+        ZonedDateTime horizon = from.plusYears(1);
+        ZonedDateTime a = first.next(from);
+        ZonedDateTime b = second.next(from);
+        for (int step = 0; step < OVERLAP_STEPS && a != null && b != null && !a.isAfter(horizon) && !b.isAfter(horizon); step++) {
+            int order = a.compareTo(b);
+            if (order == 0) return true;
+            if (order < 0) {
+                a = first.next(b.minusSeconds(1));
+            } else {
+                b = second.next(a.minusSeconds(1));
+            }
+        }
+        return false;
+    }
+
+
+    public boolean cancelRecurring(Long scheduleId) {
+        if (!disarm(scheduleId)) return false;
+
+        recurringScheduleRepository.deleteById(scheduleId);
+        return true;
+    }
+
+
+    /**
+     * Destroy listener: deletes the machine's schedules in the transaction that destroys it and
+     * takes them off the wheel after it commits.
+     */
+    private void removeSchedules(Long machineId) {
+        List<RecurringSchedule> schedules = recurringScheduleRepository.findByMachineIdInOrderById(Collections.singletonList(machineId));
+        if (schedules.isEmpty()) return;
+
+        recurringScheduleRepository.deleteAllInBatch(schedules);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedules.forEach(schedule -> disarm(schedule.getId()));
+            }
+        });
+        System.err.println("Removed " + schedules.size() + " recurring schedules of machine " + machineId);
+    }
+
+
+    private boolean disarm(Long scheduleId) {
+        ArmedSchedule armedSchedule = armed.remove(scheduleId);
+        if (armedSchedule == null) return false;
+
+        HierarchicalTimingWheel.Timeout timeout = armedSchedule.timeout;
+        if (timeout != null) timeout.cancel();
+        return true;
+    }
+
+
+    private boolean isActive(Long machineId) {
+        return machineService.getMachineState(machineId).filter(MachineState::isActive).isPresent();
+    }
+
+
+    /**
+     * Recurring schedules of the machines, each with the time of its next firing.
+     */
+    public List<ScheduleResponse> getRecurringSchedules(Collection<Long> machineIds) {
+        if (machineIds.isEmpty()) return Collections.emptyList();
+
+        ZonedDateTime now = ZonedDateTime.now();
+        return recurringScheduleRepository.findByMachineIdInOrderById(machineIds).stream()
+                .map(schedule -> {
+                    ArmedSchedule armedSchedule = armed.get(schedule.getId());
+                    ZonedDateTime next = armedSchedule != null ? armedSchedule.cron.next(now) : null;
+                    return new ScheduleResponse(schedule.getId(), schedule.getMachineId(), schedule.getAction(),
+                            next != null ? next.toLocalDateTime() : null, schedule.getCron());
+                })
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Puts every persisted schedule back on the wheel, reading them in id order one batch at a time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSchedules() {
+        ZonedDateTime now = ZonedDateTime.now();
+        long lastId = 0;
+        List<RecurringSchedule> batch;
+        do {
+            batch = recurringScheduleRepository.findByIdGreaterThanOrderById(lastId, PageRequest.of(0, batchSize));
+            for (RecurringSchedule schedule : batch) {
+                arm(schedule, now);
+                lastId = schedule.getId();
+            }
+        } while (batch.size() == batchSize);
+        System.err.println("Loaded " + armed.size() + " recurring schedules");
+    }
+
+
+    private void arm(RecurringSchedule schedule, ZonedDateTime after) {
+        ArmedSchedule armedSchedule = new ArmedSchedule(schedule, CronExpression.parse(schedule.getCron()));
+        armed.put(schedule.getId(), armedSchedule);
+        armNext(armedSchedule, after);
+    }
+
+
+    private void armNext(ArmedSchedule armedSchedule, ZonedDateTime after) {
+        ZonedDateTime fireTime = armedSchedule.cron.next(after);
+        if (fireTime == null) return;
+
+        long delay = Duration.between(ZonedDateTime.now(), fireTime).toMillis();
+        armedSchedule.timeout = wheel.schedule(() -> fire(armedSchedule, fireTime), delay, TimeUnit.MILLISECONDS);
+    }
+
+
+    private void fire(ArmedSchedule armedSchedule, ZonedDateTime fireTime) {
+        if (armed.get(armedSchedule.schedule.getId()) != armedSchedule || !machineService.isAccepting()) return;
+        if (!isActive(armedSchedule.schedule.getMachineId())) {
+            disarm(armedSchedule.schedule.getId());
+            recurringScheduleRepository.deleteAllByIdInBatch(Collections.singletonList(armedSchedule.schedule.getId()));
+            return;
+        }
+
+        metrics.recordScheduleLag(Duration.between(fireTime, ZonedDateTime.now()));
+        armNext(armedSchedule, fireTime);
+        LifecycleAction action = LifecycleAction.fromString(armedSchedule.schedule.getAction());
+        if (action == null) {
+            System.err.println("Invalid action specified: " + armedSchedule.schedule.getAction());
+            return;
+        }
+        try {
+            machineService.runScheduledAction(armedSchedule.schedule.getMachineId(), action);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+    }
+}
@@ -0,0 +1,58 @@
+package rs.raf.demo.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import rs.raf.demo.model.Role;
+import rs.raf.demo.model.enums.Permission;
+import rs.raf.demo.repositories.RoleRepository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable mapping of role ids to {@link Permission}s, read once when the application is
+ * ready. Roles missing from the catalog (created later) are resolved by name.
+ */
+@Component
+public class RoleCatalog {
+
+    private final RoleRepository roleRepository;
+    private volatile Map<Long, Permission> permissionsByRoleId = Collections.emptyMap();
+
+
+    @Autowired
+    public RoleCatalog(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<Long, Permission> permissions = new HashMap<>();
+        for (Role role : roleRepository.findAll()) {
+            Permission permission = Permission.fromAuthority(role.getName());
+            if (permission == null) {
+                System.err.println("Role " + role.getName() + " does not match any permission");
+            } else {
+                permissions.put(role.getId(), permission);
+            }
+        }
+        permissionsByRoleId = Collections.unmodifiableMap(permissions);
+        System.err.println("Loaded " + permissions.size() + " roles");
+    }
+
+
+    public long maskOf(Collection<Role> roles) {
+        long mask = 0;
+        for (Role role : roles) {
+            Permission permission = permissionsByRoleId.get(role.getId());
+            if (permission == null) permission = Permission.fromAuthority(role.getName());
+            if (permission != null) mask |= permission.mask();
+        }
+        return mask;
+    }
+}
@@ -1,15 +1,21 @@
 package rs.raf.demo.services;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import rs.raf.demo.model.Role;
 import rs.raf.demo.model.User;
 import rs.raf.demo.model.UserInfo;
 import rs.raf.demo.repositories.RoleRepository;
 import rs.raf.demo.repositories.UserRepository;
+import rs.raf.demo.responses.UserResponse;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -59,8 +65,26 @@ public class UserService {
     }
 
 
-    public List<User> getUsers() {
-        return userRepository.findAll();
+    public List<UserResponse> getUsers() {
+        return searchUsers(null, Pageable.unpaged()).getContent();
+    }
+
+
+    /**
+     * One query for the page of users and one for all of their roles.
+     */
+    @Transactional(readOnly = true)
+    public Page<UserResponse> searchUsers(String query, Pageable pageable) {
+        String pattern = query == null || query.trim().isEmpty() ? null : "%" + query.trim().toLowerCase() + "%";
+        Page<UserResponse> users = userRepository.findResponses(pattern, pageable);
+        if (users.isEmpty()) return users;
+
+        Map<Long, UserResponse> usersById = new HashMap<>();
+        users.forEach(user -> usersById.put(user.getId(), user));
+        for (Object[] userRole : userRepository.findRolesByUserIds(usersById.keySet())) {
+            usersById.get((Long) userRole[0]).getRoles().add((Role) userRole[1]);
+        }
+        return users;
     }
 
 
@@ -0,0 +1,117 @@
+package rs.raf.demo.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache split into segments. Each segment is an access-ordered
+ * {@link LinkedHashMap} behind its own lock, so concurrent lookups only contend when their keys
+ * land in the same segment. A segment that grows past its share of {@code maxSize} drops its
+ * least recently used entry; recency is tracked per segment, which approximates a global LRU
+ * order as long as keys spread evenly over the segments.
+ */
+public class BoundedCache<K, V> {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+
+
+    public BoundedCache(int maxSize) {
+        this(maxSize, DEFAULT_SEGMENTS);
+    }
+
+
+    /**
+     * The segment count is rounded down to a power of two, and to at most {@code maxSize} so
+     * that every segment holds at least one entry. The segments' shares add up to
+     * {@code maxSize}.
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maxSize, int segmentCount) {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(segmentCount, maxSize)));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(maxSize / count + (i < maxSize % count ? 1 : 0));
+        }
+    }
+
+
+    public V get(K key) {
+        Segment<K, V> segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+
+    /**
+     * Returns the value already cached under the key, or null if this one was added.
+     */
+    public V putIfAbsent(K key, V value) {
+        Segment<K, V> segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.putIfAbsent(key, value);
+        }
+    }
+
+
+    public void remove(K key) {
+        Segment<K, V> segment = segmentOf(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+
+    /**
+     * Removes the entry only if it still maps to the value.
+     */
+    public boolean remove(K key, V value) {
+        Segment<K, V> segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.remove(key, value);
+        }
+    }
+
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+
+    private Segment<K, V> segmentOf(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package rs.raf.demo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel driven by a single ticking thread. Level 0 has one bucket per
+ * tick, every higher level covers a whole rotation of the level below it, and timeouts are
+ * moved down a level when their bucket comes up. Adding and cancelling a timeout are O(1)
+ * list operations on its bucket; due tasks are handed to the dispatcher, never run on the
+ * ticking thread.
+ */
+public class HierarchicalTimingWheel {
+
+    private static final int BITS = 6;
+    private static final int WHEEL_SIZE = 1 << BITS;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    public final class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Removes the timeout from the wheel. Returns false if it already fired or was cancelled.
+         */
+        public boolean cancel() {
+            synchronized (lock) {
+                if (bucket == null) return false;
+                bucket.remove(this);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        private Timeout takeAll() {
+            Timeout first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private final long tickMillis;
+    private final Executor dispatcher;
+    private final LongSupplier clock;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final Object lock = new Object();
+    private final Thread ticker;
+    private final long startMillis;
+    private long currentTick;
+    private int size;
+    private volatile boolean running;
+
+
+    public HierarchicalTimingWheel(long tickMillis, Executor dispatcher) {
+        this(tickMillis, dispatcher, System::currentTimeMillis);
+    }
+
+
+    /**
+     * Reads the time in milliseconds from the given clock instead of the system clock.
+     */
+    HierarchicalTimingWheel(long tickMillis, Executor dispatcher, LongSupplier clock) {
+        this.tickMillis = tickMillis;
+        this.dispatcher = dispatcher;
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.ticker = new Thread(this::tickLoop, "timing-wheel");
+        this.ticker.setDaemon(true);
+    }
+
+
+    public void start() {
+        running = true;
+        ticker.start();
+    }
+
+
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+
+
+    /**
+     * Runs the task on the dispatcher once the delay has passed, rounded up to the next tick.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long elapsed = clock.getAsLong() - startMillis + Math.max(0, unit.toMillis(delay));
+        Timeout timeout = new Timeout((elapsed + tickMillis - 1) / tickMillis, task);
+        synchronized (lock) {
+            place(timeout, currentTick + 1);
+            size++;
+        }
+        return timeout;
+    }
+
+
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+
+    /**
+     * New timeouts go no earlier than the next tick; cascaded ones may land in the bucket of
+     * the tick being processed, which is expired right after the cascade.
+     */
+    private void place(Timeout timeout, long earliestTick) {
+        long deadline = Math.max(timeout.deadline, earliestTick);
+        long delta = Math.min(deadline - currentTick, MAX_DELTA);
+        deadline = currentTick + delta;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        wheels[level][(int) ((deadline >>> (BITS * level)) & MASK)].add(timeout);
+    }
+
+
+    private void tickLoop() {
+        while (running) {
+            long dueTick = advance();
+            try {
+                Thread.sleep(Math.max(1, startMillis + (dueTick + 1) * tickMillis - clock.getAsLong()));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Processes every tick up to the current time and dispatches the timeouts that expired.
+     * Returns the tick reached.
+     */
+    long advance() {
+        long dueTick = (clock.getAsLong() - startMillis) / tickMillis;
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (lock) {
+            while (currentTick < dueTick) {
+                tick(expired);
+            }
+        }
+        for (Timeout timeout : expired) {
+            try {
+                dispatcher.execute(timeout.task);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return dueTick;
+    }
+
+
+    private void tick(List<Timeout> expired) {
+        currentTick++;
+        int level = 1;
+        while (level < LEVELS && ((currentTick >>> (BITS * (level - 1))) & MASK) == 0) {
+            cascade(wheels[level][(int) ((currentTick >>> (BITS * level)) & MASK)]);
+            level++;
+        }
+
+        Timeout timeout = wheels[0][(int) (currentTick & MASK)].takeAll();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+            expired.add(timeout);
+            size--;
+            timeout = next;
+        }
+    }
+
+
+    private void cascade(Bucket bucket) {
+        Timeout timeout = bucket.takeAll();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            place(timeout, currentTick);
+            timeout = next;
+        }
+    }
+}
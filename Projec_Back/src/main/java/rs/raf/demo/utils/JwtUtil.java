@@ -2,46 +2,173 @@ package rs.raf.demo.utils;
 
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import rs.raf.demo.model.UserPrincipal;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
     private final String SECRET_KEY = "MY JWT SECRET";
 
+    public static final String TOKEN_TYPE = "typ";
+    public static final String ACCESS_TOKEN = "access";
+    public static final String REFRESH_TOKEN = "refresh";
+    public static final String PERMISSIONS = "perm";
+
+    @Value("${jwt.permissions-claim.enabled:true}")
+    private boolean permissionsClaimEnabled = true;
+
+    private final boolean cacheEnabled;
+    private final BoundedCache<String, Claims> verifiedTokens;
+    private final long accessTokenTtlMillis;
+    private final long refreshTokenTtlMillis;
+    private final TokenRevocationStore revocationStore;
+
+    public JwtUtil(@Value("${jwt.cache.enabled:true}") boolean cacheEnabled, @Value("${jwt.cache.max-size:10000}") int cacheMaxSize,
+                   @Value("${jwt.access-token.ttl-minutes:15}") long accessTokenTtlMinutes, @Value("${jwt.refresh-token.ttl-days:7}") long refreshTokenTtlDays,
+                   TokenRevocationStore revocationStore) {
+        this.cacheEnabled = cacheEnabled;
+        this.accessTokenTtlMillis = TimeUnit.MINUTES.toMillis(accessTokenTtlMinutes);
+        this.refreshTokenTtlMillis = TimeUnit.DAYS.toMillis(refreshTokenTtlDays);
+        this.revocationStore = revocationStore;
+        this.verifiedTokens = new BoundedCache<>(cacheMaxSize);
+    }
+
     public Claims extractAllClaims(String token) {
         return Jwts.parser().setSigningKey(SECRET_KEY).parseClaimsJws(token).getBody();
     }
 
+    /**
+     * Parses and verifies the token once. Tokens that were already verified are served from a
+     * bounded LRU cache keyed by the token's SHA-256 hash until they expire, skipping the
+     * signature check entirely. Tokens that are no longer presented age out when it is full.
+     */
+    public Claims verify(String token) {
+        if (!cacheEnabled) return extractAllClaims(token);
+
+        String key = hash(token);
+        Claims claims = verifiedTokens.get(key);
+        if (claims != null) {
+            if (!isExpired(claims)) return claims;
+            verifiedTokens.remove(key);
+        }
+
+        claims = extractAllClaims(token);
+        verifiedTokens.put(key, claims);
+        return claims;
+    }
+
     public String extractUsername(String token) {
-        return extractAllClaims(token).getSubject();
+        return verify(token).getSubject();
     }
 
-    public Object extractPermission(String token, String permission) { return extractAllClaims(token).get(permission); }
+    public Object extractPermission(String token, String permission) { return verify(token).get(permission); }
 
     public boolean isTokenExpired(String token) {
-        return extractAllClaims(token).getExpiration().before(new Date());
+        return isExpired(verify(token));
     }
 
+    /**
+     * Short-lived access token, sent with every request.
+     */
     public String generateToken(String username){
+        return buildToken(username, ACCESS_TOKEN, accessTokenTtlMillis, null);
+    }
 
+    /**
+     * Access token that also carries the user's permission mask, so requests can be
+     * authorized without loading the user.
+     */
+    public String generateToken(String username, long permissions) {
+        return buildToken(username, ACCESS_TOKEN, accessTokenTtlMillis, permissionsClaimEnabled ? permissions : null);
+    }
 
+    /**
+     * Long-lived token that is only accepted by /api/users/refresh to mint new access tokens.
+     */
+    public String generateRefreshToken(String username) {
+        return buildToken(username, REFRESH_TOKEN, refreshTokenTtlMillis, null);
+    }
+
+    private String buildToken(String username, String type, long ttlMillis, Long permissions) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
                 .setSubject(username)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) //10hrs
+                .setId(UUID.randomUUID().toString())
+                .claim(TOKEN_TYPE, type)
+                .claim(PERMISSIONS, permissions)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + ttlMillis))
                 .signWith(SignatureAlgorithm.HS512, SECRET_KEY).compact();
     }
 
     public boolean validateToken(String token, UserDetails user) {
-        return (user.getUsername().equals(extractUsername(token)) && !isTokenExpired(token));
+        return validateClaims(verify(token), user);
+    }
+
+    public boolean validateClaims(Claims claims, UserDetails user) {
+        return user.getUsername().equals(claims.getSubject()) && isUsableAccessToken(claims);
+    }
+
+    /**
+     * Principal built from the permission claim, or null if the token has none.
+     */
+    public UserPrincipal principalFromClaims(Claims claims) {
+        Object permissions = claims.get(PERMISSIONS);
+        if (!(permissions instanceof Number)) return null;
+        return new UserPrincipal(claims.getSubject(), null, ((Number) permissions).longValue());
+    }
+
+    /**
+     * True for unexpired, unrevoked tokens that are not refresh tokens.
+     */
+    public boolean isUsableAccessToken(Claims claims) {
+        return !REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE)) && !isExpired(claims) && !revocationStore.isRevoked(claims.getId());
+    }
+
+    /**
+     * Returns the claims of a valid, unrevoked refresh token, or null.
+     */
+    public Claims verifyRefreshToken(String token) {
+        try {
+            Claims claims = verify(token);
+            if (!REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE)) || isExpired(claims) || revocationStore.isRevoked(claims.getId())) return null;
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Revokes the token until it expires. Returns false if it was already revoked.
+     */
+    public boolean revoke(Claims claims) {
+        return claims.getId() != null && revocationStore.revoke(claims.getId(), claims.getExpiration());
+    }
+
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
+    }
+
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -0,0 +1,18 @@
+package rs.raf.demo.utils;
+
+import rs.raf.demo.model.enums.Permission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller method that may only be called by users holding the permission.
+ * Checked by {@link rs.raf.demo.filters.PermissionInterceptor}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresPermission {
+    Permission value();
+}
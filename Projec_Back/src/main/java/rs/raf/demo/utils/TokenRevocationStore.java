@@ -0,0 +1,38 @@
+package rs.raf.demo.utils;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids ({@code jti}) of revoked tokens, each kept only until the token itself would have
+ * expired. Expired entries are purged every {@code jwt.revocation.purge-interval-ms}.
+ */
+@Component
+public class TokenRevocationStore {
+
+    private final Map<String, Long> revokedUntil = new ConcurrentHashMap<>();
+
+
+    /**
+     * Returns false if the token was already revoked, so a refresh token can only be spent once.
+     */
+    public boolean revoke(String tokenId, Date expiration) {
+        return revokedUntil.putIfAbsent(tokenId, expiration.getTime()) == null;
+    }
+
+
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && revokedUntil.containsKey(tokenId);
+    }
+
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revokedUntil.values().removeIf(expiresAt -> expiresAt < now);
+    }
+}
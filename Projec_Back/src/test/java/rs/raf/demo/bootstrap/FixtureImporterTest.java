@@ -0,0 +1,83 @@
+package rs.raf.demo.bootstrap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import rs.raf.demo.repositories.ErrorMessageRepository;
+import rs.raf.demo.repositories.MachineRepository;
+import rs.raf.demo.repositories.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Imports a CSV fixture with several users against an in-memory H2 database, with a batch
+ * size small enough that users and their machines land in different batches.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fixture;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "seed.import.batch-size=2",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+class FixtureImporterTest {
+
+    @Autowired
+    private FixtureImporter fixtureImporter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MachineRepository machineRepository;
+
+    @Autowired
+    private ErrorMessageRepository errorMessageRepository;
+
+    @Test
+    void attributesMachinesAndErrorsToTheirOwnUser(@TempDir Path dir) throws Exception {
+        Path fixture = dir.resolve("fixture.csv");
+        Files.write(fixture, Arrays.asList(
+                "user,ana@fixture.rs,ana1,Ana,Ilic,can_search_machines",
+                "machine,ana@fixture.rs,STOPPED,true,2021-12-01,A1",
+                "error,Start,2021-12-02,Machine is already running.",
+                "user,bob@fixture.rs,bob1,Bob,Bobic,",
+                "error,Stop,2021-12-03,Belongs to no machine of bob.",
+                "machine,bob@fixture.rs,RUNNING,true,2021-12-01,B1",
+                "machine,bob@fixture.rs,STOPPED,false,2021-12-01,B2",
+                "error,Restart,2021-12-04,Machine is not active, restart refused.",
+                "user,cid@fixture.rs,cid1,Cid,Cidic,",
+                "machine,cid@fixture.rs,STOPPED,true,2021-12-01,C1"), StandardCharsets.UTF_8);
+
+        FixtureImporter.Import result = fixtureImporter.importFile(fixture);
+
+        assertEquals(3, result.getUsers());
+        assertEquals(4, result.getMachines());
+        assertEquals(2, result.getErrors());
+        assertEquals(1, result.getSkipped(), "the error right after bob's user line has no machine");
+
+        assertNotNull(userRepository.findByMail("cid@fixture.rs"));
+        List<Long> ana = machineRepository.findIdsByOwnerMail("ana@fixture.rs");
+        List<Long> bob = new ArrayList<>(machineRepository.findIdsByOwnerMail("bob@fixture.rs"));
+        Collections.sort(bob);
+        assertEquals(1, ana.size());
+        assertEquals(2, bob.size());
+        assertEquals(1, machineRepository.findIdsByOwnerMail("cid@fixture.rs").size());
+
+        assertEquals(1, errorMessageRepository.findFirstPageByMachineId(ana.get(0), PageRequest.of(0, 10)).size());
+        assertEquals(1, errorMessageRepository.findFirstPageByMachineId(bob.get(1), PageRequest.of(0, 10)).size());
+        assertEquals(0, errorMessageRepository.findFirstPageByMachineId(bob.get(0), PageRequest.of(0, 10)).size());
+    }
+}
@@ -0,0 +1,74 @@
+package rs.raf.demo.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import rs.raf.demo.services.MachineService;
+import rs.raf.demo.utils.JwtUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streams an inventory larger than the cursor's fetch size (500 rows) through the NDJSON
+ * endpoint against an in-memory H2 database.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stream;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+class MachineStreamTest {
+
+    private static final String MAIL = "john@gmail.com";
+    private static final int MACHINES = 1234;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MachineService machineService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void streamsEveryMachineAcrossSeveralFetches() throws Exception {
+        int existing = machineService.getMachinesByUser(MAIL).size();
+        machineService.createMachines(IntStream.range(0, MACHINES).mapToObj(i -> "stream-" + i).collect(Collectors.toList()), MAIL);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(jwtUtil.generateToken(MAIL));
+        ResponseEntity<String> response = restTemplate.exchange("/api/machines/get/stream?mail=" + MAIL, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<Long> ids = new ArrayList<>();
+        for (String line : response.getBody().split("\n")) {
+            JsonNode machine = objectMapper.readTree(line);
+            assertEquals(MAIL, machine.get("ownerMail").asText());
+            ids.add(machine.get("id").asLong());
+        }
+        assertEquals(existing + MACHINES, ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) < ids.get(i), "rows are streamed in id order");
+        }
+    }
+}
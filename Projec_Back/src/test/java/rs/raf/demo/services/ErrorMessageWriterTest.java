@@ -0,0 +1,57 @@
+package rs.raf.demo.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import rs.raf.demo.repositories.ErrorMessageRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A batch with an error for a machine that does not exist, against an in-memory H2 database:
+ * the foreign key fails the batch insert and the retry keeps the other rows.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:errors;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "machines.errors.writer.flush-interval-ms=200",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"})
+class ErrorMessageWriterTest {
+
+    @Autowired
+    private ErrorMessageWriter errorWriter;
+
+    @Autowired
+    private MachineService machineService;
+
+    @Autowired
+    private ErrorMessageRepository errorMessageRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void keepsTheRestOfABatchWhenOneRowFails() throws Exception {
+        Long machineId = machineService.createMachine("errors", "john@gmail.com").getId();
+        double failedBefore = registry.get("machines.errors.writer.failed").functionCounter().count();
+
+        errorWriter.record(machineId, "START", "first");
+        errorWriter.record(Long.MAX_VALUE, "START", "machine is gone");
+        errorWriter.record(machineId, "STOP", "second");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((registry.get("machines.errors.writer.failed").functionCounter().count() == failedBefore
+                || errorMessageRepository.findFirstPageByMachineId(machineId, PageRequest.of(0, 10)).size() < 2)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(failedBefore + 1, registry.get("machines.errors.writer.failed").functionCounter().count());
+        assertEquals(2, errorMessageRepository.findFirstPageByMachineId(machineId, PageRequest.of(0, 10)).size());
+    }
+}
@@ -0,0 +1,51 @@
+package rs.raf.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3, 1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        cache.get("a");
+
+        cache.put("d", 4);
+
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(4, cache.get("d"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void writesCountAsUse() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, 1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("a", 10);
+
+        cache.put("c", 3);
+
+        assertNull(cache.get("b"));
+        assertEquals(10, cache.get("a"));
+    }
+
+    @Test
+    void staysWithinMaxSizeAcrossSegments() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(100, 16);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+            cache.get(0);
+        }
+
+        assertEquals(0, cache.get(0));
+        assertEquals(100, cache.size(), "every segment is full");
+    }
+}
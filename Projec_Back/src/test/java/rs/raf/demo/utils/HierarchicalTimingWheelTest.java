@@ -0,0 +1,100 @@
+package rs.raf.demo.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the wheel tick by tick from a manual clock, with tasks run on the calling thread,
+ * and checks the tick each task fires on.
+ */
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final long START = 1_000_000;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final Map<String, Long> firedAt = new HashMap<>();
+    private HierarchicalTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HierarchicalTimingWheel(TICK, Runnable::run, now::get);
+    }
+
+    @Test
+    void firesOnTheDeadlineTickAtEveryLevel() {
+        long[] delays = {0, 1, 63, 64, 65, 100, 4095, 4096, 4097, 64 * 64 * 64 + 17};
+        for (long delay : delays) {
+            schedule("t" + delay, delay * TICK);
+        }
+        assertEquals(delays.length, wheel.size());
+
+        runUntil(64 * 64 * 64 + 20);
+
+        for (long delay : delays) {
+            assertEquals(Math.max(1, delay), firedAt.get("t" + delay), "delay of " + delay + " ticks");
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void roundsPartialTicksUp() {
+        schedule("partial", 25);
+        runUntil(5);
+        assertEquals(3, firedAt.get("partial"));
+    }
+
+    @Test
+    void placesNewTimeoutsRelativeToTheCurrentTick() {
+        runUntil(60);
+        schedule("sameLevel", 10 * TICK);
+        runUntil(4090);
+        schedule("acrossLevel1", 10 * TICK);
+        schedule("level1", 200 * TICK);
+        runUntil(4400);
+
+        assertEquals(70, firedAt.get("sameLevel"));
+        assertEquals(4100, firedAt.get("acrossLevel1"));
+        assertEquals(4290, firedAt.get("level1"));
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() {
+        HierarchicalTimingWheel.Timeout cancelled = schedule("cancelled", 100 * TICK);
+        HierarchicalTimingWheel.Timeout kept = schedule("kept", 100 * TICK);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, wheel.size());
+
+        runUntil(200);
+
+        assertFalse(firedAt.containsKey("cancelled"));
+        assertEquals(100, firedAt.get("kept"));
+        assertFalse(kept.cancel());
+        assertEquals(0, wheel.size());
+    }
+
+    private HierarchicalTimingWheel.Timeout schedule(String name, long delayMillis) {
+        return wheel.schedule(() -> firedAt.put(name, currentTick()), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long currentTick() {
+        return (now.get() - START) / TICK;
+    }
+
+    private void runUntil(long tick) {
+        while (currentTick() < tick) {
+            now.addAndGet(TICK);
+            wheel.advance();
+        }
+    }
+}
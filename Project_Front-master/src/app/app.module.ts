@@ -8,11 +8,12 @@ import { LoginComponent } from './components/login/login.component';
 import { AddUserComponent } from './components/add-user/add-user.component';
 import { EditUserComponent } from './components/edit-user/edit-user.component';
 import {FormsModule, ReactiveFormsModule} from "@angular/forms";
-import {HttpClientModule} from "@angular/common/http";
+import {HTTP_INTERCEPTORS, HttpClientModule} from "@angular/common/http";
 import { AllMachinesComponent } from './components/all-machines/all-machines.component';
 import { CreateMachineComponent } from './components/create-machine/create-machine.component';
 import { ErrorHistoryComponent } from './components/error-history/error-history.component';
 import { ScheduleComponent } from './components/schedule/schedule.component';
+import { AuthInterceptor } from './services/auth.interceptor';
 import {MatRadioModule} from "@angular/material/radio";
 
 
@@ -38,7 +39,9 @@ import {MatRadioModule} from "@angular/material/radio";
     MatRadioModule
     
   ],
-  providers: [],
+  providers: [
+    { provide: HTTP_INTERCEPTORS, useClass: AuthInterceptor, multi: true }
+  ],
   bootstrap: [AppComponent]
 })
 export class AppModule { }
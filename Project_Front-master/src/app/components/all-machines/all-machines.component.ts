@@ -2,6 +2,7 @@ import { Component, OnDestroy, OnInit } from '@angular/core';
 import { NavigationEnd, Router } from '@angular/router';
 import { Machine, MachineSearchParameters, Role } from '../../models';
 import { MachineService } from '../../services/machine.service';
+import { LoginService } from '../../services/login.service';
 import { FormBuilder, FormGroup, Validators } from '@angular/forms';
 import { Stomp, CompatClient, Message } from '@stomp/stompjs';
 import {  StompSubscription } from '@stomp/stompjs';
@@ -27,6 +28,7 @@ export class AllMachinesComponent implements OnInit, OnDestroy {
 
   constructor(
     private machineService: MachineService,
+    private loginService: LoginService,
     private router: Router,
     private formBuilder: FormBuilder
   ) {
@@ -37,7 +39,7 @@ export class AllMachinesComponent implements OnInit, OnDestroy {
     this.stoppedStatus = false;
 
     this.stompClient = Stomp.client('ws://localhost:8080/ws'); // Promenite adresu i port prema vašem bekendu
-    this.stompClient.connect({}, () => {
+    this.stompClient.connect({ Authorization: `Bearer ${localStorage.getItem('token')}` }, () => {
       this.subscribeToMachineStatus();
     });
 
@@ -65,21 +67,22 @@ export class AllMachinesComponent implements OnInit, OnDestroy {
 
   
   private subscribeToMachineStatus(): void {
-    if (this.stompClient) {
-      const topic = '/topic/machine-status';
+    const userMail = localStorage.getItem('userMail');
+    if (this.stompClient && userMail) {
+      const topic = '/topic/machine-status/' + userMail;
       const subscription = this.stompClient.subscribe(topic, (message: Message) => {
-        // Ovde obradite primljenu poruku
-        const machineStatus = JSON.parse(message.body);
-        console.log('Received machine status update:', machineStatus);
-  
-        const machineToUpdate: any = this.machineList.find((machine: any) => machine.id === machineStatus.id);
-
-        if (machineToUpdate) {
-          // Ažuriramo status mašine
-          machineToUpdate.status = machineStatus.status; // Pretpostavljamo da je status u primljenoj poruci
-          this.machineList = [...this.machineList]; // Ažurirajte listu kako bi Angular primetio promenu i osvežio prikaz
-        }
-        
+        // Jedna poruka sadrzi sve promene statusa u poslednjem vremenskom prozoru
+        const machineStatuses: { id: number, status: string, active: boolean }[] = JSON.parse(message.body);
+        console.log('Received machine status updates:', machineStatuses);
+
+        machineStatuses.forEach(machineStatus => {
+          const machineToUpdate: any = this.machineList.find((machine: any) => machine.id === machineStatus.id);
+          if (machineToUpdate) {
+            machineToUpdate.status = machineStatus.status;
+            machineToUpdate.active = machineStatus.active;
+          }
+        });
+        this.machineList = [...this.machineList]; // Ažurirajte listu kako bi Angular primetio promenu i osvežio prikaz
       });
       this.subscriptions.push(subscription);
     }
@@ -166,7 +169,9 @@ export class AllMachinesComponent implements OnInit, OnDestroy {
   }
 
   logOut(): void {
+    this.loginService.logout().subscribe();
     localStorage.setItem('token', '');
+    localStorage.setItem('refreshToken', '');
     localStorage.setItem('roles', '');
   }
 }
@@ -1,5 +1,6 @@
 import { Component, OnDestroy, OnInit } from '@angular/core';
 import { UserService } from '../../services/user.service';
+import { LoginService } from '../../services/login.service';
 import { Role, User } from '../../models';
 import { NavigationEnd, Router } from '@angular/router';
 
@@ -13,7 +14,7 @@ export class AllUsersComponent implements OnInit, OnDestroy {
   userRoles: Role[] = [];
   canUpdate: boolean = false;
 
-  constructor(private userService: UserService, private router: Router) {}
+  constructor(private userService: UserService, private loginService: LoginService, private router: Router) {}
 
   ngOnDestroy() {}
 
@@ -40,7 +41,9 @@ export class AllUsersComponent implements OnInit, OnDestroy {
   }
 
   logOut(): void {
+    this.loginService.logout().subscribe();
     localStorage.setItem('token', '');
+    localStorage.setItem('refreshToken', '');
     localStorage.setItem('roles', '');
   }
 }
@@ -36,6 +36,7 @@ export class LoginComponent implements OnInit{
 
     this.loginService.loginUser(this.userLoginInfo).subscribe(loginResponse =>{
       localStorage.setItem("token", loginResponse.jwt);
+      localStorage.setItem("refreshToken", loginResponse.refreshToken);
       localStorage.setItem("userRoles",  JSON.stringify(loginResponse.roles))
       localStorage.setItem("userMail", this.userLoginInfo.mail)
       this.router.navigate(["all"]);
@@ -11,6 +11,7 @@ export interface UserLoginInfo{
   
   export interface UserLoginResponse {
     jwt: string
+    refreshToken: string
     roles: Role[]
   }
   
@@ -37,7 +38,8 @@ export interface UserLoginInfo{
     creationDate: Date
     status: Status
     active: boolean
-    user: User
+    ownerId: number
+    ownerMail: string
   }
   
   export interface MachineSearchParameters{
@@ -55,7 +57,10 @@ export interface UserLoginInfo{
   
   export enum Status {
     STOPPED,
-    RUNNING
+    RUNNING,
+    STARTING,
+    STOPPING,
+    RESTARTING
   }
   
   export interface ErrorMessage {
@@ -63,7 +68,7 @@ export interface UserLoginInfo{
     message: string
     action: string
     date: Date
-    machine: Machine
+    machineId: number
   }
   
   export interface CreateRequest{
@@ -0,0 +1,57 @@
+import { Injectable } from '@angular/core';
+import {HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest} from "@angular/common/http";
+import {Observable, throwError} from "rxjs";
+import {catchError, finalize, map, shareReplay, switchMap} from "rxjs/operators";
+import {UserLoginResponse} from "../models";
+import {LoginService} from "./login.service";
+
+// Access tokens are short-lived: when one is rejected, it is renewed once with the refresh
+// token and the request is sent again. Concurrent failures share the same refresh call.
+@Injectable()
+export class AuthInterceptor implements HttpInterceptor {
+
+  private refreshInFlight: Observable<string> | null = null;
+
+  constructor(private loginService: LoginService) {}
+
+  intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    // services build their headers once, so the latest token is put in here
+    const token = localStorage.getItem("token");
+    if (token && request.headers.has("Authorization")) {
+      request = request.clone({ setHeaders: { Authorization: `Bearer ${token}` } });
+    }
+
+    return next.handle(request).pipe(
+      catchError((error: HttpErrorResponse) => {
+        const refreshToken = localStorage.getItem("refreshToken");
+        if ((error.status !== 401 && error.status !== 403) || !refreshToken || this.isAuthRequest(request)) {
+          return throwError(error);
+        }
+
+        return this.refresh(refreshToken).pipe(
+          switchMap(token => next.handle(request.clone({ setHeaders: { Authorization: `Bearer ${token}` } })))
+        );
+      })
+    );
+  }
+
+  private refresh(refreshToken: string): Observable<string> {
+    if (!this.refreshInFlight) {
+      this.refreshInFlight = this.loginService.refresh(refreshToken).pipe(
+        map((response: UserLoginResponse) => {
+          localStorage.setItem("token", response.jwt);
+          localStorage.setItem("refreshToken", response.refreshToken);
+          localStorage.setItem("userRoles", JSON.stringify(response.roles));
+          return response.jwt;
+        }),
+        finalize(() => this.refreshInFlight = null),
+        shareReplay(1)
+      );
+    }
+    return this.refreshInFlight;
+  }
+
+  private isAuthRequest(request: HttpRequest<any>): boolean {
+    return request.url.endsWith("/login") || request.url.endsWith("/refresh") || request.url.endsWith("/logout");
+  }
+}
@@ -1,5 +1,5 @@
 import { Injectable } from '@angular/core';
-import {HttpClient} from "@angular/common/http";
+import {HttpClient, HttpHeaders} from "@angular/common/http";
 import {UserLoginInfo, UserLoginResponse} from "../models";
 import {Observable} from "rxjs";
 import {environment} from "../environments/environment";
@@ -16,5 +16,14 @@ export class LoginService {
     return this.httpClient.post<UserLoginResponse>(`${environment.apiUserServerUrl}/login`, loginInfo);
   }
 
+  public refresh(refreshToken: string): Observable<UserLoginResponse>{
+    return this.httpClient.post<UserLoginResponse>(`${environment.apiUserServerUrl}/refresh`, { refreshToken: refreshToken });
+  }
+
+  public logout(): Observable<any>{
+    const headers = new HttpHeaders().set('Authorization', `Bearer ${localStorage.getItem("token")}`);
+    return this.httpClient.post(`${environment.apiUserServerUrl}/logout`, { refreshToken: localStorage.getItem("refreshToken") }, { headers: headers });
+  }
+
 
 }